@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.t07m.ssdn.DiscordEmbedBuilder;
+import com.t07m.ssdn.SSDNConfig;
+import com.t07m.ssdn.metrics.MetricsSnapshot;
+
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+/**
+ * Renders the status embed from a snapshot of a {@link FakeNode} with full
+ * history, by number of monitored interfaces. Run with {@code -prof gc} to
+ * see bytes allocated per embed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmbedBenchmark {
+
+	@Param({"1", "4", "16"})
+	public int interfaces;
+
+	private DiscordEmbedBuilder builder;
+	private MetricsSnapshot snapshot;
+
+	@Setup
+	public void setup() {
+		FakeNode node = new FakeNode(interfaces).fill();
+		SSDNConfig config = new SSDNConfig();
+		config.setServerName("Benchmark");
+		config.setMonitoredNetworkInterfaces(node.interfaces);
+		config.setMonitoredStorageMounts(node.mounts);
+		builder = new DiscordEmbedBuilder(config);
+		snapshot = node.snapshot();
+	}
+
+	@Benchmark
+	public MessageEmbed buildMessage() {
+		return builder.buildMessage(snapshot);
+	}
+
+	@Benchmark
+	public long buildAndHash() {
+		return DiscordEmbedBuilder.contentHash(builder.buildMessage(snapshot));
+	}
+
+}
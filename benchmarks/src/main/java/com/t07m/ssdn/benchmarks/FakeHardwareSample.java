@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.benchmarks;
+
+import com.t07m.ssdn.providers.HardwareSample;
+
+import oshi.hardware.CentralProcessor.TickType;
+
+/**
+ * Deterministic hardware readings so the monitor and embed benchmarks measure
+ * the code under test and not /proc or OSHI. Counters advance with the sample
+ * time, usages move along a slow wave.
+ */
+public class FakeHardwareSample extends HardwareSample{
+
+	private static final long MemoryTotal = 16L << 30;
+	private static final long SwapTotal = 4L << 30;
+
+	private final long[] ticks = new long[TickType.values().length];
+
+	public FakeHardwareSample() {
+		super(null);
+	}
+
+	private double wave(double period) {
+		return (Math.sin(getTime() / period) + 1) / 2;
+	}
+
+	public long[] getCpuTicks() {
+		//100 ticks per second split between busy and idle
+		long elapsed = getTime() / 10;
+		long busy = (long) (elapsed * (0.2 + 0.3 * wave(60000)));
+		ticks[TickType.USER.getIndex()] = busy;
+		ticks[TickType.IDLE.getIndex()] = elapsed - busy;
+		return ticks;
+	}
+
+	public long getMemoryTotal() {
+		return MemoryTotal;
+	}
+
+	public long getMemoryAvailable() {
+		return (long) (MemoryTotal * (0.4 + 0.2 * wave(120000)));
+	}
+
+	public long getSwapTotal() {
+		return SwapTotal;
+	}
+
+	public long getSwapUsed() {
+		return (long) (SwapTotal * 0.05 * wave(300000));
+	}
+
+	public double getCpuTemperature() {
+		return 45 + 10 * wave(90000);
+	}
+
+	public boolean readNetworkCounters(byte[][] names, long[] bytesRecv, long[] bytesSent) {
+		long seconds = getTime() / 1000;
+		for(int i = 0; i < names.length; i++) {
+			bytesRecv[i] = seconds * (125000L << (i % 4));
+			bytesSent[i] = seconds * (12500L << (i % 4));
+		}
+		return true;
+	}
+
+}
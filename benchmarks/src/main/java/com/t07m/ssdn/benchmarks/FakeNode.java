@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.t07m.ssdn.metrics.MetricsSnapshot;
+import com.t07m.ssdn.monitors.CPUMonitor;
+import com.t07m.ssdn.monitors.Monitor;
+import com.t07m.ssdn.monitors.NetworkMonitor;
+import com.t07m.ssdn.monitors.RAMMonitor;
+import com.t07m.ssdn.monitors.SwapMonitor;
+import com.t07m.ssdn.monitors.TempMonitor;
+
+/**
+ * The node's monitors fed from a {@link FakeHardwareSample}, with full history
+ * in every window once {@link #fill()} has run.
+ */
+public class FakeNode {
+
+	public static final long[] Windows = {
+			TimeUnit.MINUTES.toMillis(1),
+			TimeUnit.MINUTES.toMillis(5),
+			TimeUnit.MINUTES.toMillis(15)};
+
+	private static final long Start = 1_700_000_000_000L;
+
+	public final String[] interfaces;
+	public final String[] mounts = {"/", "/home"};
+	public final CPUMonitor cpu = new CPUMonitor(Windows);
+	public final RAMMonitor ram = new RAMMonitor(Windows);
+	public final SwapMonitor swap = new SwapMonitor(Windows);
+	public final TempMonitor temp = new TempMonitor(Windows);
+	public final NetworkMonitor network;
+	public final FakeHardwareSample sample = new FakeHardwareSample();
+
+	private final Monitor[] monitors;
+	private long now = Start;
+
+	public FakeNode(int interfaceCount) {
+		interfaces = new String[interfaceCount];
+		for(int i = 0; i < interfaceCount; i++) {
+			interfaces[i] = "eth" + i;
+		}
+		network = new NetworkMonitor(interfaces, Windows);
+		monitors = new Monitor[] {cpu, ram, swap, temp, network};
+		for(Monitor monitor : monitors) {
+			monitor.init(null);
+		}
+	}
+
+	/**
+	 * Samples every monitor at its own interval until the longest window is full.
+	 */
+	public FakeNode fill() {
+		long end = now + Windows[Windows.length-1] + TimeUnit.SECONDS.toMillis(3);
+		while(now < end) {
+			tick();
+		}
+		return this;
+	}
+
+	public long tick() {
+		sample.reset(advance(TimeUnit.SECONDS.toMillis(1)));
+		for(Monitor monitor : monitors) {
+			if((now - Start) % monitor.getInterval() == 0)
+				monitor.sample(sample);
+		}
+		return now;
+	}
+
+	/**
+	 * Moves the clock without sampling, for benchmarks that sample one monitor themselves.
+	 */
+	public long advance(long millis) {
+		now += millis;
+		return now;
+	}
+
+	public long getTime() {
+		return now;
+	}
+
+	public MetricsSnapshot snapshot() {
+		LinkedHashMap<String, Long> freeSpace = new LinkedHashMap<String, Long>();
+		for(int i = 0; i < mounts.length; i++) {
+			freeSpace.put(mounts[i], 182000000000L >> i);
+		}
+		return new MetricsSnapshot(now, cpu.getSnapshot(), ram.getSnapshot(), swap.getSnapshot(), temp.getSnapshot(),
+				network.getRecvSnapshots(), network.getSentSnapshots(), freeSpace,
+				TimeUnit.DAYS.toMillis(41), "203.0.113.7", "Springfield", "Oregon");
+	}
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.benchmarks;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.t07m.ssdn.SSDNConfig;
+import com.t07m.ssdn.fleet.FleetCollector;
+import com.t07m.ssdn.fleet.FleetEmbedBuilder;
+import com.t07m.ssdn.fleet.FleetNode;
+import com.t07m.ssdn.fleet.FleetProtocol;
+import com.t07m.ssdn.fleet.FleetSample;
+import com.t07m.ssdn.metrics.MetricsSnapshot;
+import com.t07m.ssdn.metrics.WindowSnapshot;
+
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+/**
+ * Starts a {@link FleetCollector} on localhost and has thousands of simulated
+ * agents push to it, each over its own connection, then renders the fleet
+ * pages from what arrived.
+ * <pre>
+ * java -cp target/benchmarks.jar com.t07m.ssdn.benchmarks.FleetLoadTest [agents] [seconds] [pushMillis]
+ * </pre>
+ */
+public class FleetLoadTest {
+
+	private static final int SenderThreads = 4;
+
+	public static void main(String[] args) throws Exception {
+		int agents = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		long push = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+
+		FleetCollector collector = new FleetCollector("127.0.0.1", 0, TimeUnit.SECONDS.toMillis(30), agents);
+		collector.init();
+		InetSocketAddress address = new InetSocketAddress("127.0.0.1", collector.getBoundPort());
+
+		long start = System.currentTimeMillis();
+		AtomicLong sent = new AtomicLong();
+		List<Thread> senders = new ArrayList<Thread>();
+		for(int t = 0; t < SenderThreads; t++) {
+			int first = agents * t / SenderThreads;
+			int last = agents * (t + 1) / SenderThreads;
+			Thread thread = new Thread(() -> simulate(address, first, last, push, start + TimeUnit.SECONDS.toMillis(seconds), sent), "Agents-" + t);
+			thread.start();
+			senders.add(thread);
+		}
+		long lastReceived = 0;
+		for(int s = 0; s < seconds; s++) {
+			Thread.sleep(1000);
+			long received = collector.getSamplesReceived().get();
+			System.out.printf("%3ds nodes %6d samples/s %7d sent %9d received %9d rejected %d%n",
+					s + 1, collector.getNodeCount(), received - lastReceived, sent.get(), received, collector.getFramesRejected().get());
+			lastReceived = received;
+		}
+		for(Thread thread : senders)
+			thread.join();
+		Thread.sleep(500);
+
+		List<FleetNode> nodes = collector.getNodes();
+		FleetEmbedBuilder builder = new FleetEmbedBuilder(new SSDNConfig());
+		int pages = (nodes.size() + 39) / 40;
+		long renderStart = System.nanoTime();
+		List<MessageEmbed> embeds = builder.buildPages(nodes, System.currentTimeMillis(), collector.getNodeTimeout(), pages);
+		long render = System.nanoTime() - renderStart;
+		System.out.printf("sent %d received %d over %d nodes, rendered %d pages in %.2fms%n",
+				sent.get(), collector.getSamplesReceived().get(), nodes.size(), embeds.size(), render / 1e6);
+		collector.cleanup();
+	}
+
+	private static void simulate(InetSocketAddress address, int first, int last, long push, long end, AtomicLong sent) {
+		List<SocketChannel> channels = new ArrayList<SocketChannel>();
+		ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+		try {
+			for(int i = first; i < last; i++) {
+				SocketChannel channel = SocketChannel.open(address);
+				channel.socket().setTcpNoDelay(true);
+				buffer.clear();
+				FleetProtocol.writeHello(buffer, "agent-" + i);
+				write(channel, buffer);
+				channels.add(channel);
+			}
+			long next = System.currentTimeMillis();
+			while(next < end) {
+				buffer.clear();
+				int frame = FleetProtocol.beginFrame(buffer, FleetProtocol.Batch);
+				buffer.putShort((short) 1);
+				FleetProtocol.writeSample(buffer, sample(System.currentTimeMillis()));
+				FleetProtocol.endFrame(buffer, frame);
+				for(SocketChannel channel : channels) {
+					write(channel, buffer);
+					sent.incrementAndGet();
+				}
+				next += push;
+				long wait = next - System.currentTimeMillis();
+				if(wait > 0)
+					Thread.sleep(wait);
+			}
+		} catch (IOException | InterruptedException e) {
+			e.printStackTrace();
+		} finally {
+			for(SocketChannel channel : channels) {
+				try {
+					channel.close();
+				} catch (IOException e) {}
+			}
+		}
+	}
+
+	private static void write(SocketChannel channel, ByteBuffer buffer) throws IOException {
+		ByteBuffer frame = buffer.duplicate();
+		frame.flip();
+		while(frame.hasRemaining())
+			channel.write(frame);
+	}
+
+	private static FleetSample sample(long now) {
+		long[] windows = {TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(5), TimeUnit.MINUTES.toMillis(15)};
+		WindowSnapshot empty = WindowSnapshot.empty(windows);
+		HashMap<String, WindowSnapshot> rates = new HashMap<String, WindowSnapshot>();
+		rates.put("eth0", empty);
+		HashMap<String, Long> free = new HashMap<String, Long>();
+		free.put("/", 182000000000L);
+		MetricsSnapshot snapshot = new MetricsSnapshot(now, empty, empty, empty, empty, rates, rates, free, 3600000L, "127.0.0.1", "City", "Region");
+		return FleetSample.of(snapshot, new String[] {"eth0"}, new String[] {"/"});
+	}
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.t07m.ssdn.FormatUtils;
+
+/**
+ * Formats the dynamic text of one status embed: four percentage or temperature
+ * rows, two interface rows, two mounts and the uptime. The legacy benchmark
+ * uses a copy of the String based formatting this replaced.
+ * Run with {@code -prof gc} to compare bytes allocated per embed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormatBenchmark {
+
+	private static final int ColumnWidth = 12;
+
+	private final double[] usages = {12.34, 7.5, 3.07, 61.02, 60.9, 59.0, 0.0, 0.0, 0.0, 48.3, 47.9, 45.1};
+	private final long[] rates = {1250000L, 48000L, 930000L, 51000L, 880000L, 47500L, 12000L, 300L, 9000L, 250L, 11000L, 280L};
+	private final long[] free = {182000000000L, 930000000L};
+	private final long uptime = TimeUnit.DAYS.toMillis(41) + TimeUnit.HOURS.toMillis(5) + 17000L;
+
+	private final StringBuilder sb = new StringBuilder(128);
+
+	@Benchmark
+	public int legacy() {
+		int length = 0;
+		for(int row = 0; row < 4; row++) {
+			String unit = row == 3 ? "°C" : "%";
+			length += LegacyFormat.formatRow(ColumnWidth,
+					usages[row*3]+unit,
+					usages[row*3+1]+unit,
+					usages[row*3+2]+unit).length();
+		}
+		for(int nif = 0; nif < 2; nif++) {
+			int r = nif*6;
+			length += LegacyFormat.formatRow(ColumnWidth,
+					("↑" + LegacyFormat.formatBitsPerSecond(rates[r]) +"↓" + LegacyFormat.formatBitsPerSecond(rates[r+1])),
+					("↑" + LegacyFormat.formatBitsPerSecond(rates[r+2]) +"↓" + LegacyFormat.formatBitsPerSecond(rates[r+3])),
+					("↑" + LegacyFormat.formatBitsPerSecond(rates[r+4]) +"↓" + LegacyFormat.formatBitsPerSecond(rates[r+5]))).length();
+		}
+		for(int mnt = 0; mnt < free.length; mnt++) {
+			length += LegacyFormat.formatBytes(free[mnt]).length();
+		}
+		length += LegacyFormat.formatUptime(uptime).length();
+		return length;
+	}
+
+	@Benchmark
+	public int append() {
+		int length = 0;
+		for(int row = 0; row < 4; row++) {
+			String unit = row == 3 ? "°C" : "%";
+			int decimals = row == 3 ? 1 : 2;
+			sb.setLength(0);
+			for(int col = 0; col < 3; col++) {
+				sb.append(' ');
+				int start = sb.length();
+				FormatUtils.appendDecimal(sb, usages[row*3+col], decimals).append(unit);
+				FormatUtils.pad(sb, start, ColumnWidth);
+			}
+			length += sb.length();
+		}
+		for(int nif = 0; nif < 2; nif++) {
+			sb.setLength(0);
+			for(int col = 0; col < 3; col++) {
+				int r = nif*6 + col*2;
+				sb.append(' ');
+				int start = sb.length();
+				sb.append('↑');
+				FormatUtils.appendBits(sb, rates[r]).append("ps");
+				sb.append('↓');
+				FormatUtils.appendBits(sb, rates[r+1]).append("ps");
+				FormatUtils.pad(sb, start, ColumnWidth);
+			}
+			length += sb.length();
+		}
+		for(int mnt = 0; mnt < free.length; mnt++) {
+			sb.setLength(0);
+			length += FormatUtils.appendBytes(sb, free[mnt]).length();
+		}
+		sb.setLength(0);
+		length += FormatUtils.appendUptime(sb, uptime).length();
+		return length;
+	}
+
+	@Benchmark
+	public int appendDecimal() {
+		sb.setLength(0);
+		for(int i = 0; i < usages.length; i++) {
+			FormatUtils.appendDecimal(sb, usages[i], 2);
+		}
+		return sb.length();
+	}
+
+	@Benchmark
+	public int appendBits() {
+		sb.setLength(0);
+		for(int i = 0; i < rates.length; i++) {
+			FormatUtils.appendBits(sb, rates[i]);
+		}
+		return sb.length();
+	}
+
+	@Benchmark
+	public int appendBytes() {
+		sb.setLength(0);
+		for(int i = 0; i < free.length; i++) {
+			FormatUtils.appendBytes(sb, free[i]);
+		}
+		return sb.length();
+	}
+
+	@Benchmark
+	public int appendUptime() {
+		sb.setLength(0);
+		return FormatUtils.appendUptime(sb, uptime).length();
+	}
+
+	@Benchmark
+	public int formatRow() {
+		return FormatUtils.formatRow(ColumnWidth, "12.34%", "7.5%", "3.07%").length();
+	}
+
+	//FormatUtils as it was before the append based methods
+	private static class LegacyFormat {
+
+		private static final long SECOND = 1000;
+		private static final long MINUTE = 60 * SECOND;
+		private static final long HOUR = 60 * MINUTE;
+		private static final long DAY = 24 * HOUR;
+		private static final long MONTH = 30 * DAY;
+		private static final long YEAR = 365 * DAY;
+
+		private static String formatRow(int minWidth, String... collums) {
+			StringBuilder sb = new StringBuilder();
+			for(String s : collums) {
+				sb.append(" ");
+				sb.append(padDiscordMessage(minWidth, s));
+			}
+			return sb.toString();
+		}
+
+		private static String padDiscordMessage(int minWidth, String msg) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(msg);
+			if(msg.length() < minWidth) {
+				for(int i = 0; i < minWidth-msg.replace("*", "").replace("`", "").length(); i++) {
+					sb.append(" ");
+				}
+			}
+			return sb.toString();
+		}
+
+		private static String formatUptime(long uptime) {
+			long start = uptime;
+			StringBuilder buf = new StringBuilder();
+			if (uptime > YEAR) {
+				long years = (uptime - uptime % YEAR) / YEAR;
+				buf.append(years);
+				buf.append(" Year");
+				if(years > 1)
+					buf.append("s");
+				uptime = uptime % YEAR;
+			}
+			if (uptime > MONTH) {
+				long month = (uptime - uptime % MONTH) / MONTH;
+				if (buf.length() > 0) {
+					buf.append(" ");
+				}
+				buf.append(month);
+				buf.append(" Month");
+				if(month > 1)
+					buf.append("s");
+				uptime = uptime % MONTH;
+			}
+			if (uptime > DAY) {
+				long days = (uptime - uptime % DAY) / DAY;
+				if (buf.length() > 0) {
+					buf.append(" ");
+				}
+				buf.append(days);
+				buf.append(" Day");
+				if(days > 1)
+					buf.append("s");
+				uptime = uptime % DAY;
+			}
+			if (uptime > HOUR) {
+				long hours = (uptime - uptime % HOUR) / HOUR;
+				if (buf.length() > 0) {
+					buf.append(" ");
+				}
+				buf.append(hours);
+				buf.append(" Hour");
+				if(hours > 1)
+					buf.append("s");
+				uptime = uptime % HOUR;
+			}
+			if (start < YEAR && uptime > MINUTE) {
+				long minutes = (uptime - uptime % MINUTE) / MINUTE;
+				if (buf.length() > 0) {
+					buf.append(" ");
+				}
+				buf.append(minutes);
+				buf.append(" Minute");
+				if(minutes > 1)
+					buf.append("s");
+				uptime = uptime % MINUTE;
+			}
+			if (start < MONTH && uptime > SECOND) {
+				long seconds = (uptime - uptime % SECOND) / SECOND;
+				if (buf.length() > 0) {
+					buf.append(" ");
+				}
+				buf.append(seconds);
+				buf.append(" Second");
+				if(seconds > 1)
+					buf.append("s");
+				uptime = uptime % SECOND;
+			}
+			return buf.toString();
+		}
+
+		private static String formatBitsPerSecond(long bps) {
+			return formatBits(bps) + "ps";
+		}
+
+		private static String formatBytes(long B) {
+			if(B > 1000000000000L) {
+				return B /1000000000000L + "TB";
+			}
+			if(B > 1000000000L) {
+				return B /1000000000L + "GB";
+			}
+			if(B > 1000000L) {
+				return B/1000000L + "MB";
+			}
+			if(B > 1000L) {
+				return B/1000L + "KB";
+			}
+			return B + "B";
+		}
+
+		private static String formatBits(long b) {
+			if(b > 1000000000000L) {
+				return b /1000000000000L + "Tb";
+			}
+			if(b > 1000000000L) {
+				return b /1000000000L + "Gb";
+			}
+			if(b > 1000000L) {
+				return b/1000000L + "Mb";
+			}
+			if(b > 1000L) {
+				return b/1000L + "Kb";
+			}
+			return b + "b";
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.t07m.ssdn.providers.linux.LinuxProcSource;
+
+import oshi.SystemInfo;
+import oshi.driver.linux.proc.CpuStat;
+import oshi.hardware.GlobalMemory;
+import oshi.hardware.HardwareAbstractionLayer;
+import oshi.hardware.NetworkIF;
+import oshi.hardware.platform.linux.LinuxGlobalMemory;
+
+/**
+ * Per tick cost of the /proc fast path against the OSHI calls it replaces.
+ * Linux only. Run with {@code -prof gc} to see bytes allocated per operation.
+ * <p>
+ * OSHI memoizes memory readings for a short time, far less than the sampling
+ * interval, so the OSHI memory benchmark builds a fresh reader per operation
+ * to measure the cost a real tick pays.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HardwareSourceBenchmark {
+
+	private LinuxProcSource linux;
+	private HardwareAbstractionLayer hal;
+	private List<NetworkIF> nifs;
+	private long[] ticks;
+	private byte[][] names;
+	private long[] recv;
+	private long[] sent;
+
+	@Setup
+	public void setup() {
+		linux = LinuxProcSource.create();
+		if(linux == null)
+			throw new IllegalStateException("/proc is not readable, this benchmark requires Linux");
+		hal = new SystemInfo().getHardware();
+		nifs = hal.getNetworkIFs(false);
+		ticks = new long[8];
+		names = new byte[nifs.size()][];
+		for(int i = 0; i < names.length; i++) {
+			names[i] = nifs.get(i).getName().getBytes(StandardCharsets.US_ASCII);
+		}
+		recv = new long[names.length];
+		sent = new long[names.length];
+	}
+
+	@TearDown
+	public void tearDown() {
+		linux.close();
+	}
+
+	@Benchmark
+	public long[] procCpuTicks() {
+		linux.readCpuTicks(ticks);
+		return ticks;
+	}
+
+	@Benchmark
+	public long[] oshiCpuTicks() {
+		//The processor memoizes its ticks, so call the parser it wraps
+		return CpuStat.getSystemCpuLoadTicks();
+	}
+
+	@Benchmark
+	public long procMemory() {
+		linux.readMemory();
+		return linux.getMemoryAvailable() + linux.getSwapUsed();
+	}
+
+	@Benchmark
+	public long oshiMemory() {
+		GlobalMemory memory = new LinuxGlobalMemory();
+		return memory.getAvailable() + memory.getVirtualMemory().getSwapUsed();
+	}
+
+	@Benchmark
+	public void procNetwork(Blackhole bh) {
+		linux.readNetworkCounters(names, recv, sent);
+		bh.consume(recv);
+		bh.consume(sent);
+	}
+
+	@Benchmark
+	public void oshiNetwork(Blackhole bh) {
+		for(NetworkIF nif : nifs) {
+			nif.updateAttributes();
+			bh.consume(nif.getBytesRecv());
+			bh.consume(nif.getBytesSent());
+		}
+	}
+
+	@Benchmark
+	public void oshiNetworkEnumerate(Blackhole bh) {
+		for(NetworkIF nif : hal.getNetworkIFs(false)) {
+			nif.updateAttributes();
+			bh.consume(nif.getBytesRecv());
+			bh.consume(nif.getBytesSent());
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import lombok.Getter;
+
+/**
+ * Stands in for Discord's message edit endpoint,
+ * PATCH /api/v10/channels/{channel}/messages/{message}.
+ * <p>
+ * Every response is held for the configured latency plus a random jitter.
+ * Each channel is its own rate limit bucket of {@code limit} edits per
+ * {@code window}, reported through the X-RateLimit headers the way Discord
+ * does, and edits past it are answered with a 429 and Retry-After. For every
+ * accepted edit the embed timestamp is handed to the listener, which is when
+ * the sample it shows was taken.
+ */
+public class MockDiscordServer {
+
+	private static final Pattern Path = Pattern.compile("/api/v10/channels/(\\d+)/messages/(\\d+)");
+	private static final Pattern Timestamp = Pattern.compile("\"timestamp\"\\s*:\\s*\"([^\"]+)\"");
+
+	private final long latency;
+	private final long jitter;
+	private final int limit;
+	private final long window;
+	private final LongConsumer listener;
+	private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<String, Bucket>();
+	private final @Getter AtomicLong accepted = new AtomicLong();
+	private final @Getter AtomicLong limited = new AtomicLong();
+	private final @Getter AtomicLong rejected = new AtomicLong();
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	public MockDiscordServer(long latency, long jitter, int limit, long window, LongConsumer listener) {
+		this.latency = latency;
+		this.jitter = jitter;
+		this.limit = limit;
+		this.window = window;
+		this.listener = listener;
+	}
+
+	/**
+	 * @return the base URL to configure as DiscordApiURL.
+	 */
+	public String start() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.createContext("/api/v10/channels/", this::handle);
+		server.start();
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v10";
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			byte[] body = readAll(exchange.getRequestBody());
+			Matcher path = Path.matcher(exchange.getRequestURI().getPath());
+			if(!exchange.getRequestMethod().equals("PATCH") || !path.matches()) {
+				rejected.incrementAndGet();
+				respond(exchange, 404, "{\"message\": \"Unknown Message\", \"code\": 10008}");
+				return;
+			}
+			long delay = latency + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+			if(delay > 0)
+				Thread.sleep(delay);
+			String channel = path.group(1);
+			Bucket bucket = buckets.computeIfAbsent(channel, c -> new Bucket());
+			long now = System.currentTimeMillis();
+			int remaining;
+			long resetAfter;
+			synchronized(bucket) {
+				if(now >= bucket.resetAt) {
+					bucket.resetAt = now + window;
+					bucket.used = 0;
+				}
+				remaining = limit - bucket.used;
+				resetAfter = bucket.resetAt - now;
+				if(remaining > 0)
+					bucket.used++;
+			}
+			exchange.getResponseHeaders().set("X-RateLimit-Limit", Integer.toString(limit));
+			exchange.getResponseHeaders().set("X-RateLimit-Remaining", Integer.toString(Math.max(0, remaining - 1)));
+			exchange.getResponseHeaders().set("X-RateLimit-Reset-After", seconds(resetAfter));
+			exchange.getResponseHeaders().set("X-RateLimit-Bucket", "channel-" + channel);
+			if(remaining <= 0) {
+				limited.incrementAndGet();
+				exchange.getResponseHeaders().set("Retry-After", Long.toString((resetAfter + 999) / 1000));
+				respond(exchange, 429, "{\"message\": \"You are being rate limited.\", \"retry_after\": " + seconds(resetAfter) + ", \"global\": false}");
+				return;
+			}
+			accepted.incrementAndGet();
+			Matcher timestamp = Timestamp.matcher(new String(body, StandardCharsets.UTF_8));
+			if(timestamp.find())
+				listener.accept(OffsetDateTime.parse(timestamp.group(1)).toInstant().toEpochMilli());
+			respond(exchange, 200, "{\"id\": \"" + path.group(2) + "\", \"channel_id\": \"" + channel + "\"}");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static String seconds(long millis) {
+		return String.format(Locale.ROOT, "%.3f", millis / 1000.0);
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while((read = in.read(buffer)) > 0)
+			out.write(buffer, 0, read);
+		return out.toByteArray();
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try(OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private static class Bucket {
+
+		private long resetAt = 0;
+		private int used = 0;
+	}
+
+}
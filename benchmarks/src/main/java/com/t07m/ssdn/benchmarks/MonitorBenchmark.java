@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Monitor getters at a full 15 minute history and the cost of one sample,
+ * by number of monitored interfaces. Hardware comes from a
+ * {@link FakeHardwareSample}. Run with {@code -prof gc} to see bytes
+ * allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MonitorBenchmark {
+
+	@Param({"1", "4", "16"})
+	public int interfaces;
+
+	private FakeNode node;
+
+	@Setup
+	public void setup() {
+		node = new FakeNode(interfaces).fill();
+	}
+
+	@Benchmark
+	public double usageGetters() {
+		double total = 0;
+		for(long window : FakeNode.Windows) {
+			total += node.cpu.getUsage(window, 2);
+			total += node.ram.getUsage(window, 2);
+			total += node.swap.getUsage(window, 2);
+			total += node.temp.getTemp(window, 1);
+		}
+		return total;
+	}
+
+	@Benchmark
+	public long networkGetters() {
+		long total = 0;
+		for(String nif : node.interfaces) {
+			for(long window : FakeNode.Windows) {
+				total += node.network.getSent(nif, window);
+				total += node.network.getRecv(nif, window);
+			}
+		}
+		return total;
+	}
+
+	@Benchmark
+	public Object networkSample() {
+		//History stays at 15 minutes, each sample evicts the oldest reading
+		node.sample.reset(node.advance(TimeUnit.SECONDS.toMillis(3)));
+		node.network.sample(node.sample);
+		return node.network.getSentSnapshots();
+	}
+
+	@Benchmark
+	public Object cpuSample() {
+		node.sample.reset(node.advance(TimeUnit.SECONDS.toMillis(1)));
+		node.cpu.sample(node.sample);
+		return node.cpu.getSnapshot();
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import com.t07m.ssdn.DiscordEmbedBuilder;
+import com.t07m.ssdn.SSDNConfig;
+import com.t07m.ssdn.ServerStatusDiscordNode;
+import com.t07m.ssdn.metrics.MetricsSnapshot;
+import com.t07m.ssdn.monitors.MetricsCollector;
+import com.t07m.ssdn.providers.OSHIProvider;
+import com.t07m.ssdn.providers.synthetic.LoadPattern;
+import com.t07m.ssdn.providers.synthetic.SyntheticHardwareSource;
+
+/**
+ * Runs the node's sampling and rendering against a {@link SyntheticHardwareSource}
+ * on a simulated clock, hours of node time in seconds of wall time. Every
+ * monitor samples every interface and mount of the synthetic host, the embed
+ * is rendered at the configured update frequency from the interfaces and
+ * mounts that fit in one embed. Reports per tick and per render cost and the
+ * live heap for every simulated hour.
+ * <pre>
+ * java -cp target/benchmarks.jar com.t07m.ssdn.benchmarks.NodeSimulation [hours] [interfaces] [mounts] [sensors] [cpu script]
+ * </pre>
+ * The cpu script is a list of "seconds:level" keyframes, see {@link LoadPattern#parse(String)}.
+ */
+public class NodeSimulation {
+
+	//An embed holds at most 25 fields
+	private static final int EmbedInterfaces = 4;
+	private static final int EmbedMounts = 8;
+
+	public static void main(String[] args) {
+		int hours = args.length > 0 ? Integer.parseInt(args[0]) : 24;
+		int interfaces = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int mounts = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+		int sensors = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+
+		long[] clock = {1_700_000_000_000L};
+		SyntheticHardwareSource source = new SyntheticHardwareSource(() -> clock[0], interfaces, mounts, sensors);
+		if(args.length > 4)
+			source.setCpuLoad(LoadPattern.parse(args[4]));
+		OSHIProvider.setSource(source);
+
+		SSDNConfig config = new SSDNConfig();
+		config.setServerName("Simulated");
+		config.setReportLocation(false);
+		config.setHistoryFile("");
+		ServerStatusDiscordNode node = new ServerStatusDiscordNode(false);
+		node.initMonitors(config);
+		MetricsCollector collector = node.getMetricsCollector();
+
+		SSDNConfig embedConfig = new SSDNConfig();
+		embedConfig.setServerName("Simulated");
+		embedConfig.setReportLocation(false);
+		embedConfig.setMonitoredNetworkInterfaces(Arrays.copyOf(config.getMonitoredNetworkInterfaces(), Math.min(EmbedInterfaces, interfaces)));
+		embedConfig.setMonitoredStorageMounts(Arrays.copyOf(config.getMonitoredStorageMounts(), Math.min(EmbedMounts, mounts)));
+		DiscordEmbedBuilder builder = new DiscordEmbedBuilder(embedConfig);
+		long renderInterval = TimeUnit.SECONDS.toMillis(config.getUpdateFrequencySeconds());
+
+		System.out.printf("Simulating %d hours of a host with %d interfaces, %d mounts and %d sensors%n", hours, interfaces, mounts, sensors);
+		System.out.printf("%5s %12s %12s %12s %12s %10s%n", "hour", "wall ms", "tick us", "max tick us", "render us", "heap MB");
+		long wallStart = System.nanoTime();
+		long hash = 0;
+		for(int hour = 1; hour <= hours; hour++) {
+			long hourStart = System.nanoTime();
+			long tickTime = 0, maxTick = 0, renderTime = 0;
+			int ticks = 0, renders = 0;
+			long hourEnd = clock[0] + TimeUnit.HOURS.toMillis(1);
+			while(clock[0] < hourEnd) {
+				clock[0] += MetricsCollector.TickInterval;
+				long t0 = System.nanoTime();
+				collector.tick(clock[0]);
+				long t1 = System.nanoTime();
+				tickTime += t1 - t0;
+				maxTick = Math.max(maxTick, t1 - t0);
+				ticks++;
+				if(clock[0] % renderInterval == 0) {
+					//Free space is read on the update cadence, as StorageMonitor does on its own service
+					node.getStorageMonitor().process();
+					MetricsSnapshot snapshot = collector.getSnapshot();
+					hash ^= DiscordEmbedBuilder.contentHash(builder.buildMessage(snapshot));
+					renderTime += System.nanoTime() - t1;
+					renders++;
+				}
+			}
+			long wall = System.nanoTime() - hourStart;
+			System.gc();
+			Runtime runtime = Runtime.getRuntime();
+			long heap = runtime.totalMemory() - runtime.freeMemory();
+			System.out.printf("%5d %12.1f %12.1f %12.1f %12.1f %10.1f%n", hour, wall / 1e6,
+					tickTime / 1e3 / ticks, maxTick / 1e3, renders == 0 ? 0 : renderTime / 1e3 / renders, heap / 1048576.0);
+		}
+		double wallSeconds = (System.nanoTime() - wallStart) / 1e9;
+		System.out.printf("%d simulated hours in %.1fs of wall time, %.0fx real time (%x)%n",
+				hours, wallSeconds, hours * 3600 / wallSeconds, hash);
+		System.exit(0);
+	}
+
+}
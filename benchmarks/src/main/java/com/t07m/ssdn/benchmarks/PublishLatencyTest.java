@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.t07m.ssdn.DiscordUpdateService;
+import com.t07m.ssdn.SSDNConfig;
+import com.t07m.ssdn.ServerStatusDiscordNode;
+import com.t07m.ssdn.providers.OSHIProvider;
+import com.t07m.ssdn.providers.synthetic.SyntheticHardwareSource;
+
+/**
+ * Runs the node's collector and {@link DiscordUpdateService} in REST mode
+ * against a {@link MockDiscordServer}, each on its own schedule as the
+ * application runs them, and measures how long a sample takes to become a
+ * visible edit. One status message is published per channel, so every
+ * target has its own rate limit bucket.
+ * <pre>
+ * java -cp target/benchmarks.jar com.t07m.ssdn.benchmarks.PublishLatencyTest [seconds] [channels] [latency ms] [jitter ms] [edits per window] [window ms]
+ * </pre>
+ * The defaults model Discord's 5 edits per 5 seconds per channel with a slow,
+ * jittery connection.
+ */
+public class PublishLatencyTest {
+
+	public static void main(String[] args) throws Exception {
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+		int channels = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		long latency = args.length > 2 ? Long.parseLong(args[2]) : 80;
+		long jitter = args.length > 3 ? Long.parseLong(args[3]) : 120;
+		int limit = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+		long window = args.length > 5 ? Long.parseLong(args[5]) : 5000;
+
+		OSHIProvider.setSource(new SyntheticHardwareSource(System::currentTimeMillis, 4, 4, 4));
+		Latencies latencies = new Latencies();
+		MockDiscordServer discord = new MockDiscordServer(latency, jitter, limit, window, latencies::add);
+		String url = discord.start();
+
+		SSDNConfig config = new SSDNConfig();
+		config.setServerName("Latency Test");
+		config.setReportLocation(false);
+		config.setPublishMode("rest");
+		config.setDiscordApiURL(url);
+		config.setDiscordToken("mock");
+		config.setUpdateFrequencySeconds(1);
+		for(int i = 0; i < channels; i++) {
+			config.addStatusMessage(1000 + i, 2000 + i);
+		}
+		ServerStatusDiscordNode node = new ServerStatusDiscordNode(false);
+		node.initMonitors(config);
+		DiscordUpdateService updates = new DiscordUpdateService(node);
+		updates.init();
+
+		System.out.printf("%d channels for %ds against %s, latency %d+%dms, %d edits per %dms%n",
+				channels, seconds, url, latency, jitter, limit, window);
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+		scheduler.scheduleAtFixedRate(() -> node.getMetricsCollector().process(), 0, 1, TimeUnit.SECONDS);
+		scheduler.scheduleAtFixedRate(() -> updates.process(), 500, 1000, TimeUnit.MILLISECONDS);
+		long start = System.currentTimeMillis();
+		long lastAccepted = 0;
+		for(int s = 10; s <= seconds; s += 10) {
+			Thread.sleep(start + TimeUnit.SECONDS.toMillis(s) - System.currentTimeMillis());
+			long accepted = discord.getAccepted().get();
+			System.out.printf("%4ds edits/s %6.1f 429s %5d %s%n", s, (accepted - lastAccepted) / 10.0,
+					discord.getLimited().get(), latencies.summary());
+			lastAccepted = accepted;
+		}
+		scheduler.shutdownNow();
+		//Let edits still in flight complete before the stand-in goes away
+		Thread.sleep(latency + jitter + 500);
+		updates.cleanup();
+		discord.stop();
+		System.out.printf("total edits %d in %ds (%.1f/s), 429s %d, other errors %d, %s%n",
+				discord.getAccepted().get(), seconds, discord.getAccepted().get() / (double) seconds,
+				discord.getLimited().get(), discord.getRejected().get(), latencies.summary());
+		System.exit(0);
+	}
+
+	private static class Latencies {
+
+		private long[] values = new long[1024];
+		private int count = 0;
+
+		private synchronized void add(long sampleTime) {
+			if(count == values.length)
+				values = Arrays.copyOf(values, count * 2);
+			values[count++] = System.currentTimeMillis() - sampleTime;
+		}
+
+		private synchronized String summary() {
+			if(count == 0)
+				return "no edits";
+			long[] sorted = Arrays.copyOf(values, count);
+			Arrays.sort(sorted);
+			return String.format("sample to edit p50 %dms p99 %dms max %dms",
+					sorted[count / 2], sorted[Math.min(count - 1, (int) (count * 0.99))], sorted[count - 1]);
+		}
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.t07m.ssdn.metrics.CompressedCounterSeries;
+import com.t07m.ssdn.metrics.CompressedTimeSeries;
+import com.t07m.ssdn.metrics.CounterSeries;
+import com.t07m.ssdn.metrics.GaugeSeries;
+import com.t07m.ssdn.metrics.RateSeries;
+import com.t07m.ssdn.metrics.TimeSeries;
+import com.t07m.ssdn.metrics.WindowedSeries;
+
+/**
+ * Raw against compressed series holding a day of history: the cost of a
+ * monitor tick (one sample plus every window average) and of the window
+ * queries alone. Temperatures are 1 second readings in eighths of a degree,
+ * usage is a noisy 3 second ratio and counter is a 3 second byte counter.
+ * Bytes per sample are printed by main:
+ * <pre>
+ * java -cp target/benchmarks.jar com.t07m.ssdn.benchmarks.SeriesEncodingBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SeriesEncodingBenchmark {
+
+	public static final long Retention = TimeUnit.DAYS.toMillis(1);
+	public static final long[] Windows = TimeSeries.windowsOf(TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(5),
+			TimeUnit.MINUTES.toMillis(15), TimeUnit.HOURS.toMillis(1), Retention);
+
+	@Param({"temperature", "usage", "counter"})
+	public String shape;
+
+	@Param({"false", "true"})
+	public boolean compressed;
+
+	private Source source;
+	private GaugeSeries gauge;
+	private RateSeries rate;
+	private WindowedSeries series;
+
+	@Setup
+	public void setup() {
+		source = new Source(shape);
+		int capacity = TimeSeries.capacityFor(Retention, source.interval) + 1;
+		if(source.counter) {
+			rate = compressed ? new CompressedCounterSeries(capacity, Windows) : new CounterSeries(capacity, Windows);
+			series = rate;
+		}else {
+			gauge = compressed ? new CompressedTimeSeries(capacity, Windows) : new TimeSeries(capacity, Windows);
+			series = gauge;
+		}
+		source.fill(gauge, rate);
+	}
+
+	@Benchmark
+	public double averages() {
+		double total = 0;
+		for(long window : Windows) {
+			total += series.average(window);
+		}
+		return total;
+	}
+
+	@Benchmark
+	public double tick() {
+		source.next(gauge, rate);
+		return averages();
+	}
+
+	public static void main(String[] args) {
+		System.out.println(String.format("%-12s %8s %12s %12s %8s", "shape", "samples", "raw B/smp", "comp B/smp", "ratio"));
+		for(String shape : new String[] {"temperature", "usage", "counter"}) {
+			Source source = new Source(shape);
+			int capacity = TimeSeries.capacityFor(Retention, source.interval) + 1;
+			long samples;
+			long raw;
+			long encoded;
+			if(source.counter) {
+				CompressedCounterSeries series = new CompressedCounterSeries(capacity, Windows);
+				source.fill(null, series);
+				samples = series.size();
+				encoded = series.footprint();
+				//Parallel time and total arrays, allocated up front
+				raw = capacity * 16L;
+			}else {
+				CompressedTimeSeries series = new CompressedTimeSeries(capacity, Windows);
+				source.fill(series, null);
+				samples = series.size();
+				encoded = series.footprint();
+				//Parallel time and value arrays, allocated up front
+				raw = capacity * 12L;
+			}
+			System.out.println(String.format("%-12s %8d %12.2f %12.2f %7.1fx", shape, samples,
+					(double) raw / samples, (double) encoded / samples, (double) raw / encoded));
+		}
+	}
+
+	private static class Source {
+
+		private final Random random = new Random(7191);
+		private final String shape;
+		private final boolean counter;
+		private final long interval;
+		private long time = 1_700_000_000_000L;
+		private long bytes = 0;
+		private int step = 0;
+
+		private Source(String shape) {
+			this.shape = shape;
+			this.counter = shape.equals("counter");
+			this.interval = shape.equals("temperature") ? TimeUnit.SECONDS.toMillis(1) : TimeUnit.SECONDS.toMillis(3);
+			if(!counter && !shape.equals("usage") && !shape.equals("temperature"))
+				throw new IllegalArgumentException("Unknown shape: " + shape);
+		}
+
+		private void fill(GaugeSeries gauge, RateSeries rate) {
+			long end = time + Retention;
+			while(time < end) {
+				next(gauge, rate);
+			}
+		}
+
+		private void next(GaugeSeries gauge, RateSeries rate) {
+			//Ticks are aligned but now and then fire a few milliseconds late
+			time += interval;
+			long at = random.nextInt(8) == 0 ? time + random.nextInt(5) : time;
+			step++;
+			if(counter) {
+				bytes += (long) ((1 + Math.sin(step / 600.0)) * 40_000_000 + random.nextInt(2_000_000));
+				rate.add(at, bytes);
+				rate.evictOlderThan(at - Retention - interval);
+			}else {
+				float value;
+				if(shape.equals("temperature"))
+					value = Math.round((48 + 6 * Math.sin(step / 900.0) + random.nextGaussian() * 0.5) * 8) / 8f;
+				else
+					value = (float) Math.min(1, Math.max(0, 0.35 + 0.2 * Math.sin(step / 300.0) + random.nextGaussian() * 0.05));
+				gauge.add(at, value);
+				gauge.evictOlderThan(at - Retention);
+			}
+		}
+	}
+
+}
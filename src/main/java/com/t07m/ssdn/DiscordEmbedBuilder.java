@@ -17,11 +17,13 @@ package com.t07m.ssdn;
 
 import java.awt.Color;
 import java.time.Instant;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.t07m.ssdn.handlers.StorageHandler;
+import com.t07m.ssdn.metrics.MetricsSnapshot;
+import com.t07m.ssdn.metrics.RollupSeries;
 import com.t07m.ssdn.providers.OSHIProvider;
 
 import net.dv8tion.jda.api.EmbedBuilder;
@@ -31,51 +33,205 @@ public class DiscordEmbedBuilder {
 
 	private static final Logger logger = LoggerFactory.getLogger(DiscordEmbedBuilder.class);
 
-	public static MessageEmbed buildMessage(ServerStatusDiscordNode app) {
-		SSDNConfig conf = app.getConfig();
+	private static final long OneMinute = TimeUnit.MINUTES.toMillis(1);
+	private static final long FiveMinutes = TimeUnit.MINUTES.toMillis(5);
+	private static final long FifteenMinutes = TimeUnit.MINUTES.toMillis(15);
+
+	private static final int ColumnWidth = 12;
+	private static final int LabelWidth = 8;
+	private static final int HistoryWidth = 14;
+
+	private static final long FNVOffset = 0xcbf29ce484222325L;
+	private static final long FNVPrime = 0x100000001b3L;
+
+	private final SSDNConfig config;
+	private final int color;
+	private final String author;
+	private final String authorIcon;
+	private final boolean reportIP;
+	private final MessageEmbed.Field processor;
+	private final boolean reportSwap;
+	private final boolean reportTemp;
+	private final String[] interfaces;
+	private final String[] interfaceLabels;
+	private final String[] mounts;
+	private final String[] mountLabels;
+	private final boolean reportUptime;
+	private final boolean reportLocation;
+	private final boolean reportHistory;
+
+	//Reused by every render, updates are built from a single thread
+	private final StringBuilder sb = new StringBuilder(128);
+
+	/**
+	 * Resolves everything that only depends on the configuration, so rendering
+	 * an update only has to fill in the values from the snapshot.
+	 */
+	public DiscordEmbedBuilder(SSDNConfig conf) {
+		this.config = conf;
+		this.color = new Color(Integer.parseInt(conf.getColorHex(), 16)).getRGB();
+		this.author = conf.getServerName();
+		this.authorIcon = conf.getIconURL().length()>0 ? conf.getIconURL() : null;
+		this.reportIP = conf.isReportIP();
+		this.processor = conf.isReportCPU() ? new MessageEmbed.Field("Processor", OSHIProvider.getProcessorName(), false) : null;
+		this.reportSwap = conf.isReportSwap();
+		this.reportTemp = conf.isReportTemp();
+		this.interfaces = conf.getMonitoredNetworkInterfaces().clone();
+		this.interfaceLabels = new String[interfaces.length];
+		for(int i = 0; i < interfaces.length; i++) {
+			interfaceLabels[i] = conf.getNetworkInterfaceTransalations().getOrDefault(interfaces[i], interfaces[i]) + " Activity:";
+		}
+		this.mounts = conf.getMonitoredStorageMounts().clone();
+		this.mountLabels = new String[mounts.length];
+		for(int i = 0; i < mounts.length; i++) {
+			mountLabels[i] = conf.getStorageMountTransalations().getOrDefault(mounts[i], mounts[i]);
+		}
+		this.reportUptime = conf.isReportUptime();
+		this.reportLocation = conf.isReportLocation();
+		this.reportHistory = conf.isReportHistory();
+	}
+
+	public boolean isCompiledFor(SSDNConfig conf) {
+		return config == conf;
+	}
+
+	public MessageEmbed buildMessage(MetricsSnapshot snapshot) {
 		EmbedBuilder eb = new EmbedBuilder()
-				.setColor(new Color(Integer.parseInt(conf.getColorHex(), 16)))
-				.setAuthor(conf.getServerName() + (conf.isReportIP() ? (" (" + app.getLocationMonitor().getIp() + ")") : ""), null, (conf.getIconURL().length()>0 ? conf.getIconURL() : null));
-		if(conf.isReportCPU()) {
-			eb.addField("Processor", OSHIProvider.getHardware().getProcessor().getProcessorIdentifier().getName(), false);
+				.setColor(color)
+				.setAuthor(reportIP ? text().append(author).append(" (").append(snapshot.getIp()).append(')').toString() : author, null, authorIcon);
+		if(processor != null) {
+			eb.addField(processor);
+		}
+		eb.addField("CPU Usage:", decimalRow(
+				snapshot.getCpuUsage(OneMinute, 2),
+				snapshot.getCpuUsage(FiveMinutes, 2),
+				snapshot.getCpuUsage(FifteenMinutes, 2), 2, "%"), false);
+		eb.addField("Memory Usage:", decimalRow(
+				snapshot.getRamUsage(OneMinute, 2),
+				snapshot.getRamUsage(FiveMinutes, 2),
+				snapshot.getRamUsage(FifteenMinutes, 2), 2, "%"), false);
+		if(reportSwap)
+			eb.addField("Swap Usage:", decimalRow(
+					snapshot.getSwapUsage(OneMinute, 2),
+					snapshot.getSwapUsage(FiveMinutes, 2),
+					snapshot.getSwapUsage(FifteenMinutes, 2), 2, "%"), false);
+		if(reportTemp)
+			eb.addField("CPU Temperature:", decimalRow(
+					snapshot.getTemp(OneMinute, 1),
+					snapshot.getTemp(FiveMinutes, 1),
+					snapshot.getTemp(FifteenMinutes, 1), 1, "°C"), false);
+		for(int i = 0; i < interfaces.length; i++) {
+			String nif = interfaces[i];
+			text();
+			rateColumn(snapshot.getSent(nif, OneMinute), snapshot.getRecv(nif, OneMinute));
+			rateColumn(snapshot.getSent(nif, FiveMinutes), snapshot.getRecv(nif, FiveMinutes));
+			rateColumn(snapshot.getSent(nif, FifteenMinutes), snapshot.getRecv(nif, FifteenMinutes));
+			eb.addField(interfaceLabels[i], sb.toString(), false);
+		}
+		for(int i = 0; i < mounts.length; i++) {
+			eb.addField(mountLabels[i], FormatUtils.appendBytes(text(), snapshot.getFreeSpace(mounts[i])).toString(), true);
 		}
-		eb.addField("CPU Usage:", FormatUtils.formatRow(12,
-				app.getCpuMonitor().getUsage1M(2)+"%",
-				app.getCpuMonitor().getUsage5M(2)+"%",
-				app.getCpuMonitor().getUsage15M(2)+"%"), false);
-		eb.addField("Memory Usage:", FormatUtils.formatRow(12,
-				app.getRamMonitor().getUsage1M(2)+"%",
-				app.getRamMonitor().getUsage5M(2)+"%",
-				app.getRamMonitor().getUsage15M(2)+"%"), false);
-		if(conf.isReportSwap())
-			eb.addField("Swap Usage:", FormatUtils.formatRow(12,
-					app.getSwapMonitor().getUsage1M(2)+"%",
-					app.getSwapMonitor().getUsage5M(2)+"%",
-					app.getSwapMonitor().getUsage15M(2)+"%"), false);
-		if(conf.isReportTemp())
-			eb.addField("CPU Temperature:", FormatUtils.formatRow(12,
-					app.getTempMonitor().getTemp1M(1)+"°C",
-					app.getTempMonitor().getTemp1M(1)+"°C",
-					app.getTempMonitor().getTemp1M(1)+"°C"), false);
-		if(conf.getMonitoredNetworkInterfaces().length > 0)
-			for(String nif: conf.getMonitoredNetworkInterfaces()) {
-				String name = conf.getNetworkInterfaceTransalations().getOrDefault(nif, nif);
-				eb.addField(name + " Activity:", FormatUtils.formatRow(12,
-				("↑" + FormatUtils.formatBitsPerSecond(app.getNetworkMonitor().getSent1M(nif)) +"↓" + FormatUtils.formatBitsPerSecond(app.getNetworkMonitor().getRecv1M(nif))),
-				("↑" + FormatUtils.formatBitsPerSecond(app.getNetworkMonitor().getSent5M(nif)) +"↓" + FormatUtils.formatBitsPerSecond(app.getNetworkMonitor().getRecv5M(nif))),
-				("↑" + FormatUtils.formatBitsPerSecond(app.getNetworkMonitor().getSent15M(nif)) +"↓" + FormatUtils.formatBitsPerSecond(app.getNetworkMonitor().getRecv15M(nif)))), false);
-			}
-		if(conf.getMonitoredStorageMounts().length > 0)
-			for(String mnt : conf.getMonitoredStorageMounts()) {
-				String name = conf.getStorageMountTransalations().getOrDefault(mnt, mnt);
-				eb.addField(name, FormatUtils.formatBytes(StorageHandler.getFreeSpace(mnt)), true);
-			}
-		if(conf.isReportUptime())
-			eb.addField("Uptime", FormatUtils.formatUptime(OSHIProvider.getOperatingSystem().getSystemUptime()*1000), false);
-		if(conf.isReportLocation())
-			eb.addField("Location", app.getLocationMonitor().getCity() + ", " + app.getLocationMonitor().getRegion(), false);
-		eb.setTimestamp(Instant.now());
+		if(reportHistory) {
+			text();
+			historyRow("CPU", snapshot.getCpuAverage(RollupSeries.Day, 1), snapshot.getCpuPeak(RollupSeries.Day, 1),
+					snapshot.getCpuAverage(RollupSeries.Week, 1), snapshot.getCpuPeak(RollupSeries.Week, 1), "%");
+			historyRow("Memory", snapshot.getRamAverage(RollupSeries.Day, 1), snapshot.getRamPeak(RollupSeries.Day, 1),
+					snapshot.getRamAverage(RollupSeries.Week, 1), snapshot.getRamPeak(RollupSeries.Week, 1), "%");
+			if(reportSwap)
+				historyRow("Swap", snapshot.getSwapAverage(RollupSeries.Day, 1), snapshot.getSwapPeak(RollupSeries.Day, 1),
+						snapshot.getSwapAverage(RollupSeries.Week, 1), snapshot.getSwapPeak(RollupSeries.Week, 1), "%");
+			if(reportTemp)
+				historyRow("Temp", snapshot.getTempAverage(RollupSeries.Day, 1), snapshot.getTempPeak(RollupSeries.Day, 1),
+						snapshot.getTempAverage(RollupSeries.Week, 1), snapshot.getTempPeak(RollupSeries.Week, 1), "°C");
+			eb.addField("Average/Peak 24h, 7d:", sb.toString(), false);
+		}
+		if(reportUptime)
+			eb.addField("Uptime", FormatUtils.appendUptime(text(), snapshot.getUptime()).toString(), false);
+		if(reportLocation)
+			eb.addField("Location", text().append(snapshot.getCity()).append(", ").append(snapshot.getRegion()).toString(), false);
+		eb.setTimestamp(Instant.ofEpochMilli(snapshot.getTime()));
 		return eb.build();
 	}
 
+	private StringBuilder text() {
+		sb.setLength(0);
+		return sb;
+	}
+
+	private String decimalRow(double value1M, double value5M, double value15M, int decimals, String unit) {
+		text();
+		decimalColumn(value1M, decimals, unit);
+		decimalColumn(value5M, decimals, unit);
+		decimalColumn(value15M, decimals, unit);
+		return sb.toString();
+	}
+
+	private void decimalColumn(double value, int decimals, String unit) {
+		sb.append(' ');
+		int start = sb.length();
+		FormatUtils.appendDecimal(sb, value, decimals).append(unit);
+		FormatUtils.pad(sb, start, ColumnWidth);
+	}
+
+	private void historyRow(String label, double average24H, double peak24H, double average7D, double peak7D, String unit) {
+		if(sb.length() > 0)
+			sb.append('\n');
+		int start = sb.length();
+		sb.append(label);
+		FormatUtils.pad(sb, start, LabelWidth);
+		historyColumn(average24H, peak24H, unit);
+		historyColumn(average7D, peak7D, unit);
+	}
+
+	private void historyColumn(double average, double peak, String unit) {
+		sb.append(' ');
+		int start = sb.length();
+		FormatUtils.appendDecimal(sb, average, 1).append(unit).append('/');
+		FormatUtils.appendDecimal(sb, peak, 1).append(unit);
+		FormatUtils.pad(sb, start, HistoryWidth);
+	}
+
+	private void rateColumn(long sent, long recv) {
+		sb.append(' ');
+		int start = sb.length();
+		sb.append('↑');
+		FormatUtils.appendBits(sb, sent).append("ps");
+		sb.append('↓');
+		FormatUtils.appendBits(sb, recv).append("ps");
+		FormatUtils.pad(sb, start, ColumnWidth);
+	}
+
+	/**
+	 * Hashes everything a reader can see in the embed except its timestamp,
+	 * so updates that would only move the timestamp can be skipped.
+	 */
+	public static long contentHash(MessageEmbed embed) {
+		long hash = FNVOffset;
+		hash = hash(hash, embed.getColorRaw());
+		hash = hash(hash, embed.getAuthor() != null ? embed.getAuthor().getName() : null);
+		hash = hash(hash, embed.getAuthor() != null ? embed.getAuthor().getIconUrl() : null);
+		hash = hash(hash, embed.getTitle());
+		hash = hash(hash, embed.getDescription());
+		for(MessageEmbed.Field field : embed.getFields()) {
+			hash = hash(hash, field.getName());
+			hash = hash(hash, field.getValue());
+			hash = hash(hash, field.isInline() ? 1 : 0);
+		}
+		return hash;
+	}
+
+	private static long hash(long hash, String value) {
+		if(value == null)
+			return hash(hash, -1);
+		for(int i = 0; i < value.length(); i++) {
+			hash = hash(hash, value.charAt(i));
+		}
+		//Separate adjacent values so "ab","c" and "a","bc" differ
+		return hash(hash, 0x1F);
+	}
+
+	private static long hash(long hash, int value) {
+		return (hash ^ value) * FNVPrime;
+	}
+
 }
@@ -15,24 +15,33 @@
  */
 package com.t07m.ssdn;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.t07m.application.Service;
-import com.t07m.ssdn.providers.JDAProvider;
+import com.t07m.ssdn.fleet.FleetCollector;
+import com.t07m.ssdn.fleet.FleetEmbedBuilder;
+import com.t07m.ssdn.metrics.MetricsSnapshot;
+import com.t07m.ssdn.publishers.GatewayPublisher;
+import com.t07m.ssdn.publishers.RestPublisher;
+import com.t07m.ssdn.publishers.StatusPublisher;
 
-import net.dv8tion.jda.api.JDA;
-import net.dv8tion.jda.api.JDA.Status;
 import net.dv8tion.jda.api.entities.MessageEmbed;
-import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
 
 public class DiscordUpdateService extends Service<ServerStatusDiscordNode>{
 
 	private final ServerStatusDiscordNode app;
-	private long lastUpdate = 0;
-	private boolean pending = false;
+	private final LinkedHashMap<String, StatusTarget> targets = new LinkedHashMap<String, StatusTarget>();
+	private final ArrayList<StatusTarget> active = new ArrayList<StatusTarget>();
+	private final ArrayList<StatusTarget> due = new ArrayList<StatusTarget>();
+	private DiscordEmbedBuilder embedBuilder;
+	private FleetEmbedBuilder fleetEmbedBuilder;
+	private StatusPublisher publisher;
 
 	public DiscordUpdateService(ServerStatusDiscordNode app) {
 		super(TimeUnit.SECONDS.toMillis(Math.min(app.getConfig().getUpdateFrequencySeconds(), 1)));
@@ -41,30 +50,98 @@ public class DiscordUpdateService extends Service<ServerStatusDiscordNode>{
 
 	private static final Logger logger = LoggerFactory.getLogger(DiscordUpdateService.class);
 
+	public void init() {
+		if(app.getConfig().isRestPublishing()) {
+			logger.info("Publishing over REST without a gateway session.");
+			publisher = new RestPublisher(app.getConfig().getDiscordToken(), app.getConfig().getDiscordApiURL());
+		}else {
+			publisher = new GatewayPublisher();
+		}
+	}
+
 	public void process() {
-		if(!pending && lastUpdate < System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(app.getConfig().getUpdateFrequencySeconds())) {
-			long channelID = app.getConfig().getChannelID();
-			long messageID = app.getConfig().getMessageID();
-			if(channelID != -1 && messageID != -1) {
-				JDA jda = JDAProvider.get();
-				if(jda != null && jda.getStatus() == Status.CONNECTED) {
-					TextChannel channel = jda.getTextChannelById(channelID);
-					if(channel != null) {
-						pending = true;
-						MessageEmbed embed = DiscordEmbedBuilder.buildMessage(app);						
-						logger.debug("Queing Node Update.");
-						channel.editMessageEmbedsById(messageID, embed).queue(response -> {
-							pending = false;
-							logger.info("Node Updated.");
-						});
-						lastUpdate = System.currentTimeMillis();
-					}
-				}
+		syncTargets();
+		long now = System.currentTimeMillis();
+		long interval = TimeUnit.SECONDS.toMillis(app.getConfig().getUpdateFrequencySeconds());
+		due.clear();
+		for(StatusTarget target : active) {
+			if(target.isDue(now, interval))
+				due.add(target);
+		}
+		if(due.isEmpty() || !publisher.isReady())
+			return;
+		long maxStaleness = TimeUnit.SECONDS.toMillis(app.getConfig().getMaxStalenessSeconds());
+		FleetCollector collector = app.getFleetCollector();
+		if(collector != null) {
+			//Every status message shows its own page of the fleet
+			List<MessageEmbed> pages = getFleetEmbedBuilder().buildPages(collector.getNodes(), now, collector.getNodeTimeout(), active.size());
+			for(int i = 0; i < due.size(); i++) {
+				StatusTarget target = due.get(i);
+				MessageEmbed page = pages.get(active.indexOf(target));
+				update(target, page, DiscordEmbedBuilder.contentHash(page), now, maxStaleness);
+			}
+			return;
+		}
+		MetricsSnapshot snapshot = app.getMetricsCollector().getSnapshot();
+		if(snapshot == null)
+			return;
+		//Render once, then fan out. Each target has its own in-flight state and backoff
+		MessageEmbed embed = getEmbedBuilder().buildMessage(snapshot);
+		long hash = DiscordEmbedBuilder.contentHash(embed);
+		for(int i = 0; i < due.size(); i++) {
+			update(due.get(i), embed, hash, now, maxStaleness);
+		}
+	}
+
+	private void update(StatusTarget target, MessageEmbed embed, long hash, long now, long maxStaleness) {
+		if(!publisher.canReach(target.getChannelID())) {
+			target.unavailable(now);
+		}else if(!target.isStale(hash, now, maxStaleness)) {
+			logger.debug("Message " + target.getMessageID() + " unchanged, skipping update.");
+			target.skip(now);
+		}else {
+			logger.debug("Queing Node Update for message " + target.getMessageID() + ".");
+			target.publish(publisher, embed, hash, now);
+		}
+	}
+
+	private void syncTargets() {
+		List<String> messages = app.getConfig().getStatusMessages();
+		if(messages.size() == targets.size() && targets.keySet().containsAll(messages))
+			return;
+		targets.keySet().retainAll(messages);
+		for(String entry : messages) {
+			if(!targets.containsKey(entry)) {
+				StatusTarget target = StatusTarget.parse(entry);
+				if(target == null)
+					logger.warn("Ignoring malformed status message entry: " + entry);
+				//Malformed entries are kept as null so they are only reported once
+				targets.put(entry, target);
 			}
 		}
+		active.clear();
+		for(StatusTarget target : targets.values()) {
+			if(target != null)
+				active.add(target);
+		}
+	}
 
+	private DiscordEmbedBuilder getEmbedBuilder() {
+		//Recompile whenever the configuration is reloaded
+		if(embedBuilder == null || !embedBuilder.isCompiledFor(app.getConfig()))
+			embedBuilder = new DiscordEmbedBuilder(app.getConfig());
+		return embedBuilder;
 	}
 
+	private FleetEmbedBuilder getFleetEmbedBuilder() {
+		if(fleetEmbedBuilder == null || !fleetEmbedBuilder.isCompiledFor(app.getConfig()))
+			fleetEmbedBuilder = new FleetEmbedBuilder(app.getConfig());
+		return fleetEmbedBuilder;
+	}
 
+	public void cleanup() {
+		if(publisher != null)
+			publisher.shutdown();
+	}
 
 }
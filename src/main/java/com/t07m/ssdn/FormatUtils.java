@@ -18,6 +18,10 @@ package com.t07m.ssdn;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * The append* methods write straight into a caller owned StringBuilder so a
+ * render can reuse one buffer. The format* methods wrap them for one-off use.
+ */
 public class FormatUtils {
 
 	private static final Logger logger = LoggerFactory.getLogger(FormatUtils.class);
@@ -29,11 +33,16 @@ public class FormatUtils {
 	private static final long MONTH = 30 * DAY;
 	private static final long YEAR = 365 * DAY;
 
+	private static final char PAD = '\u2000';
+	private static final long[] POW10 = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L};
+
 	public static String formatRow(int minWidth, String... collums) {
 		StringBuilder sb = new StringBuilder();
 		for(String s : collums) {
 			sb.append(" ");
-			sb.append(padDiscordMessage(minWidth, s));
+			int start = sb.length();
+			sb.append(s);
+			pad(sb, start, minWidth);
 		}
 		return sb.toString();
 	}
@@ -41,82 +50,99 @@ public class FormatUtils {
 	public static String padDiscordMessage(int minWidth, String msg) {
 		StringBuilder sb = new StringBuilder();
 		sb.append(msg);
-		if(msg.length() < minWidth) {
-			for(int i = 0; i < minWidth-msg.replace("*", "").replace("`", "").length(); i++) {
-				sb.append(" ");
+		pad(sb, 0, minWidth);
+		return sb.toString();
+	}
+
+	/**
+	 * Pads everything appended since start to minWidth. Discord markdown
+	 * characters take no space when rendered, so they are not counted.
+	 */
+	public static StringBuilder pad(StringBuilder sb, int start, int minWidth) {
+		int length = sb.length() - start;
+		if(length < minWidth) {
+			int visible = length;
+			for(int i = start; i < sb.length(); i++) {
+				char c = sb.charAt(i);
+				if(c == '*' || c == '`')
+					visible--;
+			}
+			for(int i = visible; i < minWidth; i++) {
+				sb.append(PAD);
 			}
 		}
-		return sb.toString();
+		return sb;
+	}
+
+	/**
+	 * Appends a value already truncated to the given decimals the way
+	 * Double.toString would print it, without the intermediate String.
+	 */
+	public static StringBuilder appendDecimal(StringBuilder sb, double value, int decimals) {
+		if(decimals < 1 || decimals >= POW10.length || Double.isNaN(value) || Double.isInfinite(value)
+				|| Math.abs(value) >= 1e7 || (value != 0 && Math.abs(value) < 1e-3)) {
+			return sb.append(value);
+		}
+		long scale = POW10[decimals];
+		long scaled = Math.round(value * scale);
+		if(scaled < 0 || (scaled == 0 && 1 / value < 0)) {
+			sb.append('-');
+			scaled = -scaled;
+		}
+		sb.append(scaled / scale);
+		sb.append('.');
+		long fraction = scaled % scale;
+		int digits = decimals;
+		while(digits > 1 && fraction % 10 == 0) {
+			fraction /= 10;
+			digits--;
+		}
+		for(long p = POW10[digits-1]; p > 1 && fraction < p; p /= 10) {
+			sb.append('0');
+		}
+		return sb.append(fraction);
 	}
 	
 	public static String formatUptime(long uptime) {
+		return appendUptime(new StringBuilder(), uptime).toString();
+	}
+
+	public static StringBuilder appendUptime(StringBuilder buf, long uptime) {
 		long start = uptime;
-		StringBuilder buf = new StringBuilder();
+		int begin = buf.length();
 		if (uptime > YEAR) {
-			long years = (uptime - uptime % YEAR) / YEAR;
-			buf.append(years);
-			buf.append(" Year");
-			if(years > 1)
-				buf.append("s");
-			uptime = uptime % YEAR;
+			uptime = appendUnit(buf, begin, uptime, YEAR, " Year");
 		}
 		if (uptime > MONTH) {
-			long month = (uptime - uptime % MONTH) / MONTH;
-			if (buf.length() > 0) {
-				buf.append(" ");
-			}
-			buf.append(month);
-			buf.append(" Month");
-			if(month > 1)
-				buf.append("s");
-			uptime = uptime % MONTH;
+			uptime = appendUnit(buf, begin, uptime, MONTH, " Month");
 		}
 		if (uptime > DAY) {
-			long days = (uptime - uptime % DAY) / DAY;
-			if (buf.length() > 0) {
-				buf.append(" ");
-			}
-			buf.append(days);
-			buf.append(" Day");
-			if(days > 1)
-				buf.append("s");
-			uptime = uptime % DAY;
+			uptime = appendUnit(buf, begin, uptime, DAY, " Day");
 		}
 		if (uptime > HOUR) {
-			long hours = (uptime - uptime % HOUR) / HOUR;
-			if (buf.length() > 0) {
-				buf.append(" ");
-			}
-			buf.append(hours);
-			buf.append(" Hour");
-			if(hours > 1)
-				buf.append("s");
-			uptime = uptime % HOUR;
+			uptime = appendUnit(buf, begin, uptime, HOUR, " Hour");
 		}
 		if (start < YEAR && uptime > MINUTE) {
-			long minutes = (uptime - uptime % MINUTE) / MINUTE;
-			if (buf.length() > 0) {
-				buf.append(" ");
-			}
-			buf.append(minutes);
-			buf.append(" Minute");
-			if(minutes > 1)
-				buf.append("s");
-			uptime = uptime % MINUTE;
+			uptime = appendUnit(buf, begin, uptime, MINUTE, " Minute");
 		}
 		if (start < MONTH && uptime > SECOND) {
-			long seconds = (uptime - uptime % SECOND) / SECOND;
-			if (buf.length() > 0) {
-				buf.append(" ");
-			}
-			buf.append(seconds);
-			buf.append(" Second");
-			if(seconds > 1)
-				buf.append("s");
-			uptime = uptime % SECOND;
+			uptime = appendUnit(buf, begin, uptime, SECOND, " Second");
 		}
-		return buf.toString();
+		return buf;
+	}
+
+	private static long appendUnit(StringBuilder buf, int begin, long uptime, long unit, String name) {
+		long count = (uptime - uptime % unit) / unit;
+		if (buf.length() > begin) {
+			buf.append(" ");
+		}
+		buf.append(count);
+		buf.append(name);
+		if(count > 1)
+			buf.append("s");
+		return uptime % unit;
 	}
+
 	public static String formatBytesPerSecond(long Bps) {
 		return formatBytes(Bps) + "ps";
 	}
@@ -126,34 +152,34 @@ public class FormatUtils {
 	}
 
 	public static String formatBytes(long B) {
-		if(B > 1000000000000L) {
-			return B /1000000000000L + "TB";
-		}
-		if(B > 1000000000L) {
-			return B /1000000000L + "GB";
-		}
-		if(B > 1000000L) {
-			return B/1000000L + "MB";
-		}
-		if(B > 1000L) {
-			return B/1000L + "KB";
-		}
-		return B + "B";
+		return appendBytes(new StringBuilder(), B).toString();
 	}
 
 	public static String formatBits(long b) {
-		if(b > 1000000000000L) {
-			return b /1000000000000L + "Tb";
+		return appendBits(new StringBuilder(), b).toString();
+	}
+
+	public static StringBuilder appendBytes(StringBuilder sb, long B) {
+		return appendScaled(sb, B, 'B');
+	}
+
+	public static StringBuilder appendBits(StringBuilder sb, long b) {
+		return appendScaled(sb, b, 'b');
+	}
+
+	private static StringBuilder appendScaled(StringBuilder sb, long value, char unit) {
+		if(value > 1000000000000L) {
+			return sb.append(value / 1000000000000L).append('T').append(unit);
 		}
-		if(b > 1000000000L) {
-			return b /1000000000L + "Gb";
+		if(value > 1000000000L) {
+			return sb.append(value / 1000000000L).append('G').append(unit);
 		}
-		if(b > 1000000L) {
-			return b/1000000L + "Mb";
+		if(value > 1000000L) {
+			return sb.append(value / 1000000L).append('M').append(unit);
 		}
-		if(b > 1000L) {
-			return b/1000L + "Kb";
+		if(value > 1000L) {
+			return sb.append(value / 1000L).append('K').append(unit);
 		}
-		return b + "b";
+		return sb.append(value).append(unit);
 	}
 }
@@ -16,14 +16,19 @@
 package com.t07m.ssdn;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.t07m.ssdn.handlers.NetworkHandler;
 import com.t07m.ssdn.handlers.StorageHandler;
+import com.t07m.ssdn.metrics.TimeSeries;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -40,10 +45,16 @@ public class SSDNConfig extends YamlConfig{
 	}
 	
 	private @Getter @Setter String DiscordToken = "";
+	@Comment("gateway or rest. rest edits the StatusMessages over plain HTTP without a bot session, use gateway to create them first.")
+	private @Getter @Setter String PublishMode = "gateway";
+	private @Getter @Setter String DiscordApiURL = "https://discord.com/api/v10";
 	private @Getter @Setter String IconURL = "https://raw.githubusercontent.com/miles7191/Server-Status-Discord-Node/main/default_icon.png";
 	private @Getter @Setter String ServerName = "";
+	@Comment("Slash command that posts a status message. Leading ! or / is ignored.")
 	private @Getter @Setter String InitCommand = "!status_<ServerName>";
 	private @Getter @Setter int UpdateFrequencySeconds = 60;
+	@Comment("Unchanged status messages are still re-sent after this many seconds.")
+	private @Getter @Setter int MaxStalenessSeconds = 900;
 	private @Getter @Setter String ColorHex = "3CAAFF";
 
 	private @Getter @Setter boolean ReportIP = true;
@@ -64,10 +75,123 @@ public class SSDNConfig extends YamlConfig{
 	}};
 	private @Getter @Setter boolean ReportUptime = true;
 	private @Getter @Setter boolean ReportLocation = true;
+	@Comment("Adds the average and peak usage of the last 24 hours and 7 days.")
+	private @Getter @Setter boolean ReportHistory = true;
+	@Comment("File next to this config that metric history is kept in across restarts, empty to keep it in memory only.")
+	private @Getter @Setter String HistoryFile = "metrics.dat";
+	@Comment("Additional averaging windows in minutes. 1, 5 and 15 are always tracked.")
+	private @Getter @Setter int[] AggregateWindowMinutes = new int[0];
+	@Comment("node reports this server, agent pushes it to a collector, collector reports every agent.")
+	private @Getter @Setter String Role = "node";
+	@Comment("Collector to push to, as <host>:<port>. Only used by agents.")
+	private @Getter @Setter String CollectorAddress = "127.0.0.1:7191";
+	@Comment("Address and port the collector listens on for agents. Use 0.0.0.0 to accept agents from other hosts.")
+	private @Getter @Setter String CollectorBindAddress = "127.0.0.1";
+	private @Getter @Setter int CollectorPort = 7191;
+	@Comment("Most agents the collector keeps track of at once.")
+	private @Getter @Setter int FleetMaxNodes = 10000;
+	private @Getter @Setter int FleetPushSeconds = 10;
+	@Comment("Agents silent for this long are shown as offline.")
+	private @Getter @Setter int FleetNodeTimeoutSeconds = 60;
+	private @Getter @Setter int FleetNodesPerPage = 40;
+	@Comment("Port to serve Prometheus metrics on at /metrics, 0 to disable.")
+	private @Getter @Setter int MetricsExporterPort = 0;
+	private @Getter @Setter String MetricsExporterBindAddress = "127.0.0.1";
 	@Comment("Set to true once configuration is complete.")
 	private @Getter @Setter boolean Configured = false;
 	
 	@Comment("Do not modify these values unless you know what you are doing.")
 	private @Getter @Setter long ChannelID = -1L;
 	private @Getter @Setter long MessageID = -1L;
+	@Comment("Status messages kept up to date, as <ChannelID>:<MessageID>.")
+	private ArrayList<String> StatusMessages = new ArrayList<String>();
+
+	public long[] getAggregateWindows() {
+		long[] windows = new long[AggregateWindowMinutes.length + 3];
+		windows[0] = TimeUnit.MINUTES.toMillis(1);
+		windows[1] = TimeUnit.MINUTES.toMillis(5);
+		windows[2] = TimeUnit.MINUTES.toMillis(15);
+		for(int i = 0; i < AggregateWindowMinutes.length; i++) {
+			windows[i+3] = TimeUnit.MINUTES.toMillis(AggregateWindowMinutes[i]);
+		}
+		return TimeSeries.windowsOf(windows);
+	}
+
+	public synchronized List<String> getStatusMessages() {
+		return new ArrayList<String>(StatusMessages);
+	}
+
+	/**
+	 * Adds a status message, replacing any existing one in the same channel.
+	 * @return the replaced message ID, or -1 if the channel had none.
+	 */
+	public synchronized long addStatusMessage(long channelID, long messageID) {
+		long replaced = -1L;
+		String prefix = channelID + ":";
+		Iterator<String> it = StatusMessages.iterator();
+		while(it.hasNext()) {
+			String entry = it.next();
+			if(entry.startsWith(prefix)) {
+				try {
+					replaced = Long.parseLong(entry.substring(prefix.length()));
+				} catch (NumberFormatException e) {}
+				it.remove();
+			}
+		}
+		StatusMessages.add(prefix + messageID);
+		return replaced;
+	}
+
+	/**
+	 * Moves the single ChannelID/MessageID pair of older configs into StatusMessages.
+	 * @return true if the config was changed.
+	 */
+	public synchronized boolean migrateStatusMessage() {
+		if(ChannelID == -1L || MessageID == -1L)
+			return false;
+		if(!StatusMessages.contains(ChannelID + ":" + MessageID))
+			StatusMessages.add(ChannelID + ":" + MessageID);
+		ChannelID = -1L;
+		MessageID = -1L;
+		return true;
+	}
+
+	public boolean isAgent() {
+		return "agent".equalsIgnoreCase(Role);
+	}
+
+	public boolean isCollector() {
+		return "collector".equalsIgnoreCase(Role);
+	}
+
+	public boolean isRestPublishing() {
+		return "rest".equalsIgnoreCase(PublishMode);
+	}
+
+	/**
+	 * @return HistoryFile resolved against the directory of this config, or null if history is kept in memory only.
+	 */
+	public File resolveHistoryFile() {
+		if(HistoryFile == null || HistoryFile.trim().isEmpty())
+			return null;
+		File file = new File(HistoryFile.trim());
+		if(file.isAbsolute())
+			return file;
+		return new File(CONFIG_FILE.getAbsoluteFile().getParentFile(), file.getPath());
+	}
+
+	/**
+	 * @return InitCommand as a valid slash command name: lowercase, at most 32 characters.
+	 */
+	public String getInitCommandName() {
+		String command = InitCommand.replace("<ServerName>", ServerName).trim();
+		while(command.startsWith("!") || command.startsWith("/"))
+			command = command.substring(1);
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < command.length() && sb.length() < 32; i++) {
+			char c = Character.toLowerCase(command.charAt(i));
+			sb.append(Character.isLetterOrDigit(c) || c == '-' || c == '_' ? c : '_');
+		}
+		return sb.length() > 0 ? sb.toString() : "status";
+	}
 }
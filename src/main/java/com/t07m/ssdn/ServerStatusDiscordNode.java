@@ -15,17 +15,25 @@
  */
 package com.t07m.ssdn;
 
+import java.util.concurrent.TimeUnit;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.zafarkhaja.semver.Version;
 import com.t07m.application.Application;
 import com.t07m.ssdn.commands.MonitorPrintCommand;
+import com.t07m.ssdn.exporters.PrometheusExporter;
+import com.t07m.ssdn.fleet.FleetAgent;
+import com.t07m.ssdn.fleet.FleetCollector;
 import com.t07m.ssdn.monitors.CPUMonitor;
+import com.t07m.ssdn.monitors.DiscoveryService;
 import com.t07m.ssdn.monitors.JDAStatusMonitor;
 import com.t07m.ssdn.monitors.LocationMonitor;
+import com.t07m.ssdn.monitors.MetricsCollector;
 import com.t07m.ssdn.monitors.NetworkMonitor;
 import com.t07m.ssdn.monitors.RAMMonitor;
+import com.t07m.ssdn.monitors.StorageMonitor;
 import com.t07m.ssdn.monitors.SwapMonitor;
 import com.t07m.ssdn.monitors.TempMonitor;
 import com.t07m.ssdn.providers.JDAProvider;
@@ -58,9 +66,13 @@ public class ServerStatusDiscordNode extends Application{
 	private @Getter SwapMonitor swapMonitor;
 	private @Getter TempMonitor tempMonitor;
 	private @Getter LocationMonitor locationMonitor;
+	private @Getter StorageMonitor storageMonitor;
 	private @Getter NetworkMonitor networkMonitor;
 	private @Getter JDAStatusMonitor jdaStatusMonitor;
+	private @Getter MetricsCollector metricsCollector;
 	private @Getter DiscordUpdateService discordUpdateService;
+	private @Getter FleetAgent fleetAgent;
+	private @Getter FleetCollector fleetCollector;
 
 	public ServerStatusDiscordNode(boolean gui) {
 		super(gui, "Server Status Discord Node - " + VERSION.toString());
@@ -70,6 +82,7 @@ public class ServerStatusDiscordNode extends Application{
 		this.config = new SSDNConfig();
 		try {
 			this.config.init();
+			this.config.migrateStatusMessage();
 			this.config.save();
 			if(!this.config.isConfigured()) {
 				logger.info("Configuration file is not configured.");
@@ -88,24 +101,56 @@ public class ServerStatusDiscordNode extends Application{
 			System.exit(-1);
 		}
 		logger.info("Launching Application.");
-		JDAProvider.initialize(this);
-		this.cpuMonitor = new CPUMonitor();
-		this.ramMonitor = new RAMMonitor();
-		this.swapMonitor = new SwapMonitor();
-		this.tempMonitor = new TempMonitor();
-		this.locationMonitor = new LocationMonitor();
-		this.networkMonitor = new NetworkMonitor();
-		this.jdaStatusMonitor = new JDAStatusMonitor(this);
-		this.discordUpdateService = new DiscordUpdateService(this);
-		this.registerService(cpuMonitor);
-		this.registerService(ramMonitor);
-		this.registerService(swapMonitor);
-		this.registerService(tempMonitor);
+		boolean agent = config.isAgent();
+		if(!agent && !config.isRestPublishing())
+			JDAProvider.initialize(this);
+		createMonitors();
+		this.registerService(metricsCollector);
+		this.registerService(new DiscoveryService());
 		this.registerService(locationMonitor);
-		this.registerService(networkMonitor);
-		this.registerService(jdaStatusMonitor);
-		this.registerService(discordUpdateService);
+		this.registerService(storageMonitor);
+		if(config.getMetricsExporterPort() > 0)
+			this.registerService(new PrometheusExporter(this));
+		if(agent) {
+			logger.info("Running as agent of " + config.getCollectorAddress() + ".");
+			this.fleetAgent = new FleetAgent(this);
+			this.registerService(fleetAgent);
+		}else {
+			if(config.isCollector()) {
+				this.fleetCollector = new FleetCollector(config.getCollectorBindAddress(), config.getCollectorPort(),
+						TimeUnit.SECONDS.toMillis(config.getFleetNodeTimeoutSeconds()), config.getFleetMaxNodes());
+				this.registerService(fleetCollector);
+			}
+			this.jdaStatusMonitor = new JDAStatusMonitor(this);
+			this.discordUpdateService = new DiscordUpdateService(this);
+			this.registerService(jdaStatusMonitor);
+			this.registerService(discordUpdateService);
+		}
 		this.getConsole().registerCommands(
 				new MonitorPrintCommand(this));
 	}
+
+	/**
+	 * Builds the monitors for a config without starting any services or
+	 * connecting to Discord, for harnesses that drive {@link MetricsCollector#tick(long)} themselves.
+	 */
+	public void initMonitors(SSDNConfig config) {
+		this.config = config;
+		createMonitors();
+		this.metricsCollector.init();
+		this.storageMonitor.process();
+	}
+
+	private void createMonitors() {
+		long[] windows = config.getAggregateWindows();
+		this.cpuMonitor = new CPUMonitor(windows);
+		this.ramMonitor = new RAMMonitor(windows);
+		this.swapMonitor = new SwapMonitor(windows);
+		this.tempMonitor = new TempMonitor(windows);
+		this.locationMonitor = new LocationMonitor();
+		this.storageMonitor = new StorageMonitor(this);
+		this.networkMonitor = new NetworkMonitor(config.getMonitoredNetworkInterfaces(), windows);
+		this.metricsCollector = new MetricsCollector(this);
+		this.metricsCollector.register(cpuMonitor, ramMonitor, swapMonitor, tempMonitor, networkMonitor);
+	}
 }
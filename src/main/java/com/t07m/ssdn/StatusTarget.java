@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.t07m.ssdn.publishers.RetryAfterException;
+import com.t07m.ssdn.publishers.StatusPublisher;
+
+import lombok.Getter;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+/**
+ * A status message kept up to date by the {@link DiscordUpdateService}.
+ * <p>
+ * At most one edit is in flight at a time and every edit carries a deadline,
+ * so a lost or hung request can never stall the target. Updates that fall due
+ * while an edit is in flight are coalesced: once it completes the next render
+ * is sent straight away, built from the newest snapshot. Failures back off
+ * exponentially, rate limited edits wait out the time Discord asks for, and
+ * edits that exhaust their rate limit bucket stretch the cadence until
+ * requests go through unthrottled again. Publishers that see the rate limit
+ * headers report the bucket directly, otherwise a slow round trip is taken to
+ * mean the edit was held back by the library.
+ */
+public class StatusTarget {
+
+	private static final Logger logger = LoggerFactory.getLogger(StatusTarget.class);
+
+	private static final long EditTimeout = TimeUnit.SECONDS.toMillis(30);
+	//Backstop in case the publisher never calls back, its own timeout should fire first
+	private static final long EditDeadline = EditTimeout + TimeUnit.SECONDS.toMillis(5);
+	private static final long MinBackoff = TimeUnit.SECONDS.toMillis(5);
+	private static final long MaxBackoff = TimeUnit.MINUTES.toMillis(10);
+	//A round trip this slow means the request waited on a rate limit bucket
+	private static final long ThrottledLatency = TimeUnit.SECONDS.toMillis(2);
+
+	private final @Getter long channelID;
+	private final @Getter long messageID;
+
+	private volatile long attempts = 0;
+	private volatile long inFlightDeadline = 0;
+	private volatile long retryAt = 0;
+	private volatile int failures = 0;
+	private volatile long slowdown = 0;
+	private volatile long lastPublished = 0;
+	private volatile long lastPublishedHash = 0;
+	private volatile boolean published = false;
+	private volatile long lastAttempt = 0;
+	private volatile boolean behind = false;
+
+	public StatusTarget(long channelID, long messageID) {
+		this.channelID = channelID;
+		this.messageID = messageID;
+	}
+
+	/**
+	 * @return the target for a "ChannelID:MessageID" config entry, or null if it is malformed.
+	 */
+	public static StatusTarget parse(String entry) {
+		int split = entry.indexOf(':');
+		if(split < 0)
+			return null;
+		try {
+			return new StatusTarget(Long.parseLong(entry.substring(0, split).trim()), Long.parseLong(entry.substring(split+1).trim()));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	public boolean isDue(long now, long interval) {
+		long deadline = inFlightDeadline;
+		if(deadline != 0) {
+			if(now < deadline) {
+				behind = behind || now - lastAttempt >= interval + slowdown;
+				return false;
+			}
+			logger.warn("Update of message " + messageID + " passed its deadline, releasing it.");
+			attempts++;
+			inFlightDeadline = 0;
+			fail(now);
+		}
+		if(now < retryAt)
+			return false;
+		return behind || now - lastAttempt >= interval + slowdown;
+	}
+
+	public boolean isStale(long hash, long now, long maxStaleness) {
+		if(!published || hash != lastPublishedHash)
+			return true;
+		return lastPublished < now - maxStaleness;
+	}
+
+	/**
+	 * Marks the update as handled without sending it, used when the rendered
+	 * content matches what the message already shows.
+	 */
+	public void skip(long now) {
+		lastAttempt = now;
+		behind = false;
+	}
+
+	public void publish(StatusPublisher publisher, MessageEmbed embed, long hash, long now) {
+		lastAttempt = now;
+		behind = false;
+		long attempt = ++attempts;
+		inFlightDeadline = now + EditDeadline;
+		publisher.edit(channelID, messageID, embed, EditTimeout, () -> {
+			if(attempt != attempts)
+				return;
+			long done = System.currentTimeMillis();
+			lastPublished = done;
+			lastPublishedHash = hash;
+			published = true;
+			failures = 0;
+			adjustCadence(publisher.getRateLimitWait(channelID), done - now);
+			inFlightDeadline = 0;
+			logger.info("Node Updated.");
+		}, error -> {
+			if(attempt != attempts)
+				return;
+			if(error instanceof RetryAfterException) {
+				logger.debug("Update of message " + messageID + " rate limited: " + error.getMessage());
+				retryAt = System.currentTimeMillis() + ((RetryAfterException) error).getRetryAfter();
+				behind = true;
+			}else {
+				logger.error("Failed to update message " + messageID + ": " + error.getMessage());
+				fail(System.currentTimeMillis());
+				if(publisher.isGone(error))
+					retryAt = System.currentTimeMillis() + MaxBackoff;
+			}
+			inFlightDeadline = 0;
+		});
+	}
+
+	/**
+	 * Backs off a target whose channel could not be resolved, without holding up the others.
+	 */
+	public void unavailable(long now) {
+		lastAttempt = now;
+		behind = false;
+		logger.warn("Channel " + channelID + " is not available, unable to update message " + messageID + ".");
+		fail(now);
+	}
+
+	private void fail(long now) {
+		int failures = Math.min(this.failures + 1, 16);
+		this.failures = failures;
+		retryAt = now + Math.min(MaxBackoff, MinBackoff << (failures - 1));
+	}
+
+	private void adjustCadence(long rateLimitWait, long latency) {
+		long wait = rateLimitWait >= 0 ? rateLimitWait : latency > ThrottledLatency ? latency : 0;
+		if(wait > 0) {
+			slowdown = Math.min(MaxBackoff, Math.max(slowdown * 2, wait));
+			logger.debug("Update of message " + messageID + " was throttled, slowing updates by " + slowdown + "ms.");
+		}else {
+			slowdown = slowdown / 2;
+		}
+	}
+
+}
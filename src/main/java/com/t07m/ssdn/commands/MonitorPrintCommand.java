@@ -16,13 +16,16 @@
 package com.t07m.ssdn.commands;
 
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.t07m.console.Command;
 import com.t07m.console.Console;
+import com.t07m.ssdn.FormatUtils;
 import com.t07m.ssdn.ServerStatusDiscordNode;
+import com.t07m.ssdn.metrics.MetricsSnapshot;
 
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
@@ -31,6 +34,10 @@ public class MonitorPrintCommand extends Command{
 
 	private static final Logger logger = LoggerFactory.getLogger(MonitorPrintCommand.class);
 
+	private static final long OneMinute = TimeUnit.MINUTES.toMillis(1);
+	private static final long FiveMinutes = TimeUnit.MINUTES.toMillis(5);
+	private static final long FifteenMinutes = TimeUnit.MINUTES.toMillis(15);
+
 	private ServerStatusDiscordNode ssdn;
 
 	public MonitorPrintCommand(ServerStatusDiscordNode ssdn) {
@@ -45,30 +52,118 @@ public class MonitorPrintCommand extends Command{
 
 	@Override
 	public void process(OptionSet optionSet, Console console) {
+		MetricsSnapshot snapshot = ssdn.getMetricsCollector().getSnapshot();
+		if(snapshot == null) {
+			logger.info("No metrics have been collected yet.");
+			return;
+		}
 		if(optionSet.has("monitor")) {
 			switch((String) optionSet.valueOf("monitor")) {
 			case "cpu":
-				logger.info(ssdn.getCpuMonitor().toString());
+				logger.info(formatUsage("CPU", snapshot.getCpuUsage(OneMinute, 2), snapshot.getCpuUsage(FiveMinutes, 2), snapshot.getCpuUsage(FifteenMinutes, 2)));
 				break;
 			case "ram":
-				logger.info(ssdn.getRamMonitor().toString());
+				logger.info(formatUsage("RAM", snapshot.getRamUsage(OneMinute, 2), snapshot.getRamUsage(FiveMinutes, 2), snapshot.getRamUsage(FifteenMinutes, 2)));
+				break;
+			case "swap":
+				logger.info(formatUsage("Swap", snapshot.getSwapUsage(OneMinute, 2), snapshot.getSwapUsage(FiveMinutes, 2), snapshot.getSwapUsage(FifteenMinutes, 2)));
 				break;
 			case "temp":
-				logger.info(ssdn.getTempMonitor().toString());
+				logger.info(formatTemp(snapshot));
 				break;
 			case "network":
-				logger.info(ssdn.getNetworkMonitor().toString());
+				logger.info(formatNetwork(snapshot));
+				break;
+			case "storage":
+				logger.info(formatStorage(snapshot));
 				break;
 			case "location":
-				logger.info(ssdn.getLocationMonitor().toString());
+				logger.info(formatLocation(snapshot));
 				break;
 			}
 			return;
 		}
-		logger.info(ssdn.getCpuMonitor().toString());
-		logger.info(ssdn.getRamMonitor().toString());
-		logger.info(ssdn.getTempMonitor().toString());
-		logger.info(ssdn.getNetworkMonitor().toString());
-		logger.info(ssdn.getLocationMonitor().toString());
+		logger.info(formatUsage("CPU", snapshot.getCpuUsage(OneMinute, 2), snapshot.getCpuUsage(FiveMinutes, 2), snapshot.getCpuUsage(FifteenMinutes, 2)));
+		logger.info(formatUsage("RAM", snapshot.getRamUsage(OneMinute, 2), snapshot.getRamUsage(FiveMinutes, 2), snapshot.getRamUsage(FifteenMinutes, 2)));
+		logger.info(formatUsage("Swap", snapshot.getSwapUsage(OneMinute, 2), snapshot.getSwapUsage(FiveMinutes, 2), snapshot.getSwapUsage(FifteenMinutes, 2)));
+		logger.info(formatTemp(snapshot));
+		logger.info(formatNetwork(snapshot));
+		logger.info(formatStorage(snapshot));
+		logger.info(formatLocation(snapshot));
+	}
+
+	private String formatUsage(String name, double usage1M, double usage5M, double usage15M) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(name);
+		sb.append(" Monitor[1m: ");
+		sb.append(usage1M);
+		sb.append("% 5m: ");
+		sb.append(usage5M);
+		sb.append("% 15m: ");
+		sb.append(usage15M);
+		sb.append("%]");
+		return sb.toString();
+	}
+
+	private String formatTemp(MetricsSnapshot snapshot) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Temp Monitor[1m: ");
+		sb.append(snapshot.getTemp(OneMinute, 2));
+		sb.append("C 5m: ");
+		sb.append(snapshot.getTemp(FiveMinutes, 2));
+		sb.append("C 15m: ");
+		sb.append(snapshot.getTemp(FifteenMinutes, 2));
+		sb.append("C]");
+		return sb.toString();
+	}
+
+	private String formatNetwork(MetricsSnapshot snapshot) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Network Monitor[");
+		for(String nif : snapshot.getInterfaces()) {
+			sb.append("\n\r{ Name: ");
+			sb.append(nif);
+			sb.append(" s1m: ");
+			sb.append(FormatUtils.formatBitsPerSecond(snapshot.getSent(nif, OneMinute)));
+			sb.append(" r1m: ");
+			sb.append(FormatUtils.formatBitsPerSecond(snapshot.getRecv(nif, OneMinute)));
+			sb.append(" s5m: ");
+			sb.append(FormatUtils.formatBitsPerSecond(snapshot.getSent(nif, FiveMinutes)));
+			sb.append(" r5m: ");
+			sb.append(FormatUtils.formatBitsPerSecond(snapshot.getRecv(nif, FiveMinutes)));
+			sb.append(" s15m: ");
+			sb.append(FormatUtils.formatBitsPerSecond(snapshot.getSent(nif, FifteenMinutes)));
+			sb.append(" r15m: ");
+			sb.append(FormatUtils.formatBitsPerSecond(snapshot.getRecv(nif, FifteenMinutes)));
+			sb.append("}");
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+	private String formatStorage(MetricsSnapshot snapshot) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Storage[");
+		for(String mnt : snapshot.getMountPoints()) {
+			sb.append("\n\r{ Mount: ");
+			sb.append(mnt);
+			sb.append(" free: ");
+			sb.append(FormatUtils.formatBytes(snapshot.getFreeSpace(mnt)));
+			sb.append("}");
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+	private String formatLocation(MetricsSnapshot snapshot) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Location Monitor[IP: ");
+		sb.append(snapshot.getIp());
+		sb.append(" City: ");
+		sb.append(snapshot.getCity());
+		sb.append(" Region: ");
+		sb.append(snapshot.getRegion());
+		sb.append("]");
+		return sb.toString();
 	}
 }
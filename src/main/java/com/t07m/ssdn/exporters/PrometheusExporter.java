@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.exporters;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.t07m.application.Service;
+import com.t07m.ssdn.FormatUtils;
+import com.t07m.ssdn.ServerStatusDiscordNode;
+import com.t07m.ssdn.metrics.MetricsSnapshot;
+
+/**
+ * Serves the latest {@link MetricsSnapshot} in the Prometheus text format on /metrics.
+ * <p>
+ * Requests are handled on the server's dispatcher thread, so one text and
+ * one byte buffer are reused for every scrape. The body is only rendered
+ * again when the collector has published a newer snapshot, every other
+ * scrape writes out the bytes already encoded. Nothing here touches the
+ * monitor locks.
+ */
+public class PrometheusExporter extends Service<ServerStatusDiscordNode>{
+
+	private static final Logger logger = LoggerFactory.getLogger(PrometheusExporter.class);
+
+	private static final String ContentType = "text/plain; version=0.0.4; charset=utf-8";
+
+	private final ServerStatusDiscordNode app;
+	private final StringBuilder sb = new StringBuilder(4096);
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+	private ByteBuffer body = ByteBuffer.allocate(8192);
+	private MetricsSnapshot rendered;
+	private HttpServer server;
+
+	public PrometheusExporter(ServerStatusDiscordNode app) {
+		super(TimeUnit.MINUTES.toMillis(1));
+		this.app = app;
+	}
+
+	public void init() {
+		String host = app.getConfig().getMetricsExporterBindAddress();
+		int port = app.getConfig().getMetricsExporterPort();
+		//Without it the headers and body go out as separate segments and every keep-alive scrape waits on a delayed ACK
+		if(System.getProperty("sun.net.httpserver.nodelay") == null)
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		try {
+			server = HttpServer.create(new InetSocketAddress(host, port), 16);
+			server.createContext("/metrics", this::handle);
+			server.start();
+			logger.info("Serving metrics on http://" + host + ":" + server.getAddress().getPort() + "/metrics");
+		} catch (IOException e) {
+			logger.error("Unable to serve metrics on " + host + ":" + port + ": " + e.getMessage());
+			server = null;
+		}
+	}
+
+	public void process() {}
+
+	public void cleanup() {
+		if(server != null) {
+			server.stop(0);
+			server = null;
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String method = exchange.getRequestMethod();
+			if(!exchange.getRequestURI().getPath().equals("/metrics")) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			if(!method.equals("GET") && !method.equals("HEAD")) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			MetricsSnapshot snapshot = app.getMetricsCollector().getSnapshot();
+			if(snapshot == null) {
+				exchange.sendResponseHeaders(503, -1);
+				return;
+			}
+			if(snapshot != rendered) {
+				render(snapshot);
+				encode();
+				rendered = snapshot;
+			}
+			exchange.getResponseHeaders().set("Content-Type", ContentType);
+			if(method.equals("HEAD")) {
+				exchange.sendResponseHeaders(200, -1);
+				return;
+			}
+			exchange.sendResponseHeaders(200, body.limit());
+			OutputStream out = exchange.getResponseBody();
+			out.write(body.array(), 0, body.limit());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void render(MetricsSnapshot snapshot) {
+		long[] windows = app.getConfig().getAggregateWindows();
+		sb.setLength(0);
+		header("ssdn_cpu_usage_percent", "CPU usage averaged over the window.");
+		for(long window : windows)
+			FormatUtils.appendDecimal(windowed("ssdn_cpu_usage_percent", window), snapshot.getCpuUsage(window, 4), 4).append('\n');
+		header("ssdn_memory_usage_percent", "Memory usage averaged over the window.");
+		for(long window : windows)
+			FormatUtils.appendDecimal(windowed("ssdn_memory_usage_percent", window), snapshot.getRamUsage(window, 4), 4).append('\n');
+		header("ssdn_swap_usage_percent", "Swap usage averaged over the window.");
+		for(long window : windows)
+			FormatUtils.appendDecimal(windowed("ssdn_swap_usage_percent", window), snapshot.getSwapUsage(window, 4), 4).append('\n');
+		header("ssdn_cpu_temperature_celsius", "CPU temperature averaged over the window.");
+		for(long window : windows)
+			FormatUtils.appendDecimal(windowed("ssdn_cpu_temperature_celsius", window), snapshot.getTemp(window, 2), 2).append('\n');
+		header("ssdn_network_transmit_bits_per_second", "Interface transmit rate averaged over the window.");
+		for(String nif : snapshot.getInterfaces()) {
+			for(long window : windows)
+				labeled("ssdn_network_transmit_bits_per_second", "interface", nif, window).append(snapshot.getSent(nif, window)).append('\n');
+		}
+		header("ssdn_network_receive_bits_per_second", "Interface receive rate averaged over the window.");
+		for(String nif : snapshot.getInterfaces()) {
+			for(long window : windows)
+				labeled("ssdn_network_receive_bits_per_second", "interface", nif, window).append(snapshot.getRecv(nif, window)).append('\n');
+		}
+		header("ssdn_storage_free_bytes", "Free space of the mount.");
+		for(String mount : snapshot.getMountPoints()) {
+			sb.append("ssdn_storage_free_bytes{mount=\"");
+			escape(mount).append("\"} ").append(snapshot.getFreeSpace(mount)).append('\n');
+		}
+		header("ssdn_uptime_seconds", "System uptime.");
+		sb.append("ssdn_uptime_seconds ").append(snapshot.getUptime() / 1000).append('\n');
+		header("ssdn_snapshot_timestamp_seconds", "When the values were sampled.");
+		sb.append("ssdn_snapshot_timestamp_seconds ").append(snapshot.getTime() / 1000).append('\n');
+	}
+
+	private void header(String name, String help) {
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(" gauge\n");
+	}
+
+	private StringBuilder windowed(String name, long window) {
+		return sb.append(name).append("{window=\"").append(TimeUnit.MILLISECONDS.toMinutes(window)).append("m\"} ");
+	}
+
+	private StringBuilder labeled(String name, String label, String value, long window) {
+		sb.append(name).append('{').append(label).append("=\"");
+		return escape(value).append("\",window=\"").append(TimeUnit.MILLISECONDS.toMinutes(window)).append("m\"} ");
+	}
+
+	private StringBuilder escape(String value) {
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if(c == '\\' || c == '"') {
+				sb.append('\\').append(c);
+			}else if(c == '\n') {
+				sb.append("\\n");
+			}else {
+				sb.append(c);
+			}
+		}
+		return sb;
+	}
+
+	private void encode() {
+		CharBuffer text = CharBuffer.wrap(sb);
+		while(true) {
+			body.clear();
+			encoder.reset();
+			CoderResult result = encoder.encode(text, body, true);
+			if(!result.isOverflow())
+				result = encoder.flush(body);
+			if(!result.isOverflow())
+				break;
+			body = ByteBuffer.allocate(body.capacity() * 2);
+			text.rewind();
+		}
+		body.flip();
+	}
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.fleet;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.t07m.application.Service;
+import com.t07m.ssdn.ServerStatusDiscordNode;
+import com.t07m.ssdn.metrics.MetricsSnapshot;
+
+/**
+ * Pushes the newest {@link MetricsSnapshot} to a {@link FleetCollector}.
+ * <p>
+ * Samples queue up while the collector is unreachable and are sent as one
+ * batch once it is back, the oldest being dropped past {@link #MaxPending}.
+ * Writes are non-blocking with a deadline, so a collector that stops
+ * reading costs a reconnect rather than the service thread.
+ */
+public class FleetAgent extends Service<ServerStatusDiscordNode>{
+
+	private static final Logger logger = LoggerFactory.getLogger(FleetAgent.class);
+
+	private static final int MaxPending = 32;
+	private static final int ConnectTimeout = (int) TimeUnit.SECONDS.toMillis(5);
+	private static final int WriteTimeout = (int) TimeUnit.SECONDS.toMillis(10);
+
+	private final ServerStatusDiscordNode app;
+	private final ArrayDeque<FleetSample> pending = new ArrayDeque<FleetSample>();
+	private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+	private SocketChannel channel;
+	private Selector selector;
+	private long lastSample = 0;
+
+	public FleetAgent(ServerStatusDiscordNode app) {
+		super(TimeUnit.SECONDS.toMillis(Math.max(app.getConfig().getFleetPushSeconds(), 1)));
+		this.app = app;
+	}
+
+	public void init() {
+		logger.debug("Initializing FleetAgent");
+	}
+
+	public void process() {
+		MetricsSnapshot snapshot = app.getMetricsCollector().getSnapshot();
+		if(snapshot != null && snapshot.getTime() != lastSample) {
+			lastSample = snapshot.getTime();
+			pending.addLast(FleetSample.of(snapshot,
+					app.getConfig().getMonitoredNetworkInterfaces(),
+					app.getConfig().getMonitoredStorageMounts()));
+			while(pending.size() > MaxPending)
+				pending.removeFirst();
+		}
+		if(pending.isEmpty())
+			return;
+		try {
+			if(channel == null)
+				connect();
+			buffer.clear();
+			int start = FleetProtocol.beginFrame(buffer, FleetProtocol.Batch);
+			int countAt = buffer.position();
+			buffer.putShort((short) 0);
+			int count = 0;
+			for(FleetSample sample : pending) {
+				int mark = buffer.position();
+				try {
+					FleetProtocol.writeSample(buffer, sample);
+				} catch (BufferOverflowException e) {
+					//Send what fits, the rest goes on the next tick
+					buffer.position(mark);
+					break;
+				}
+				count++;
+			}
+			if(count == 0) {
+				//Nothing will ever make room for it, so it would hold up the queue for good
+				logger.warn("Dropping a sample too large for a batch frame.");
+				pending.removeFirst();
+				return;
+			}
+			buffer.putShort(countAt, (short) count);
+			FleetProtocol.endFrame(buffer, start);
+			write();
+			for(int i = 0; i < count; i++)
+				pending.removeFirst();
+		} catch (IOException e) {
+			logger.warn("Unable to push to collector " + app.getConfig().getCollectorAddress() + ": " + e.getMessage());
+			close();
+		}
+	}
+
+	private void connect() throws IOException {
+		String address = app.getConfig().getCollectorAddress();
+		int split = address.lastIndexOf(':');
+		if(split < 0)
+			throw new IOException("CollectorAddress must be <host>:<port>");
+		int port;
+		try {
+			port = Integer.parseInt(address.substring(split+1).trim());
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid collector port in " + address);
+		}
+		channel = SocketChannel.open();
+		try {
+			channel.socket().setTcpNoDelay(true);
+			channel.socket().connect(new InetSocketAddress(address.substring(0, split).trim(), port), ConnectTimeout);
+			channel.configureBlocking(false);
+			selector = Selector.open();
+			channel.register(selector, SelectionKey.OP_WRITE);
+			buffer.clear();
+			FleetProtocol.writeHello(buffer, app.getConfig().getServerName());
+			write();
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+		logger.info("Connected to collector " + address);
+	}
+
+	/**
+	 * Writes the buffer, waiting for room in the socket until {@link #WriteTimeout} has passed.
+	 */
+	private void write() throws IOException {
+		buffer.flip();
+		long deadline = System.currentTimeMillis() + WriteTimeout;
+		while(buffer.hasRemaining()) {
+			if(channel.write(buffer) > 0)
+				continue;
+			long remaining = deadline - System.currentTimeMillis();
+			if(remaining <= 0)
+				throw new IOException("Collector stopped reading, write timed out after " + WriteTimeout + "ms");
+			selector.select(remaining);
+			selector.selectedKeys().clear();
+		}
+	}
+
+	private void close() {
+		if(selector != null) {
+			try {
+				selector.close();
+			} catch (IOException e) {}
+			selector = null;
+		}
+		if(channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {}
+			channel = null;
+		}
+	}
+
+	public void cleanup() {
+		close();
+	}
+
+}
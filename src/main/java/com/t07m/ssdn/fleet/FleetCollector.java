@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.fleet;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.t07m.application.Service;
+import com.t07m.ssdn.ServerStatusDiscordNode;
+
+import lombok.Getter;
+
+/**
+ * Accepts agent connections and keeps the newest sample of every node.
+ * <p>
+ * All connections are served by one selector thread, so thousands of agents
+ * cost a socket and a small buffer each rather than a thread each. The service
+ * tick only forgets nodes that have been silent for far longer than the
+ * offline timeout. At most maxNodes are tracked; once full, offline nodes make
+ * room for new ones and agents beyond that are turned away.
+ */
+public class FleetCollector extends Service<ServerStatusDiscordNode>{
+
+	private static final Logger logger = LoggerFactory.getLogger(FleetCollector.class);
+
+	private static final int InitialBuffer = 4096;
+	private static final long SelectTimeout = 250;
+
+	private final String host;
+	private final int port;
+	private final long nodeTimeout;
+	private final int maxNodes;
+	private final ConcurrentHashMap<String, FleetNode> nodes = new ConcurrentHashMap<String, FleetNode>();
+	private final @Getter AtomicLong samplesReceived = new AtomicLong();
+	private final @Getter AtomicLong framesRejected = new AtomicLong();
+
+	private Selector selector;
+	private ServerSocketChannel server;
+	private Thread thread;
+	private volatile boolean running = false;
+	private volatile @Getter int boundPort = -1;
+
+	public FleetCollector(String host, int port, long nodeTimeout, int maxNodes) {
+		super(TimeUnit.MINUTES.toMillis(1));
+		this.host = host;
+		this.port = port;
+		this.nodeTimeout = nodeTimeout;
+		this.maxNodes = Math.max(1, maxNodes);
+	}
+
+	public void init() {
+		logger.debug("Initializing FleetCollector");
+		try {
+			selector = Selector.open();
+			server = ServerSocketChannel.open();
+			server.configureBlocking(false);
+			server.bind(new InetSocketAddress(host, port), 1024);
+			server.register(selector, SelectionKey.OP_ACCEPT);
+			boundPort = server.socket().getLocalPort();
+		} catch (IOException e) {
+			logger.error("Unable to listen for agents on " + host + ":" + port + ": " + e.getMessage());
+			closeQuietly();
+			return;
+		}
+		running = true;
+		thread = new Thread(this::run, "FleetCollector-IO");
+		thread.setDaemon(true);
+		thread.start();
+		logger.info("Listening for agents on " + host + ":" + boundPort);
+	}
+
+	public void process() {
+		//Forget nodes that have been gone long enough to no longer be worth listing as offline
+		long now = System.currentTimeMillis();
+		nodes.values().removeIf(node -> now - node.getLastSeen() > nodeTimeout * 10);
+	}
+
+	public void cleanup() {
+		running = false;
+		if(selector != null)
+			selector.wakeup();
+		if(thread != null) {
+			try {
+				thread.join(TimeUnit.SECONDS.toMillis(5));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		closeQuietly();
+	}
+
+	/**
+	 * @return every known node, sorted by name.
+	 */
+	public List<FleetNode> getNodes() {
+		ArrayList<FleetNode> list = new ArrayList<FleetNode>(nodes.values());
+		Collections.sort(list, Comparator.comparing(FleetNode::getName));
+		return list;
+	}
+
+	public int getNodeCount() {
+		return nodes.size();
+	}
+
+	public long getNodeTimeout() {
+		return nodeTimeout;
+	}
+
+	private void run() {
+		while(running) {
+			try {
+				selector.select(SelectTimeout);
+				Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+				while(it.hasNext()) {
+					SelectionKey key = it.next();
+					it.remove();
+					if(!key.isValid())
+						continue;
+					if(key.isAcceptable()) {
+						accept();
+					}else if(key.isReadable()) {
+						read(key);
+					}
+				}
+			} catch (IOException e) {
+				logger.error("Fleet collector selector failed: " + e.getMessage());
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while((channel = server.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			channel.register(selector, SelectionKey.OP_READ, new Connection(channel.getRemoteAddress().toString()));
+		}
+	}
+
+	private void read(SelectionKey key) {
+		SocketChannel channel = (SocketChannel) key.channel();
+		Connection connection = (Connection) key.attachment();
+		try {
+			int read;
+			while((read = channel.read(connection.buffer)) > 0) {
+				connection.buffer.flip();
+				decodeFrames(connection);
+				connection.buffer.compact();
+				connection.growIfFull();
+			}
+			if(read < 0)
+				close(key);
+		} catch (IOException | RuntimeException e) {
+			framesRejected.incrementAndGet();
+			logger.debug("Dropping agent " + connection.address + ": " + e.getMessage());
+			close(key);
+		}
+	}
+
+	private void decodeFrames(Connection connection) throws IOException {
+		ByteBuffer buffer = connection.buffer;
+		while(buffer.remaining() >= 4) {
+			int length = buffer.getInt(buffer.position());
+			if(length < 1 || length > FleetProtocol.MaxFrame)
+				throw new IOException("Bad frame length " + length);
+			if(buffer.remaining() < length + 4) {
+				connection.need = length + 4;
+				return;
+			}
+			int end = buffer.position() + 4 + length;
+			int limit = buffer.limit();
+			buffer.position(buffer.position() + 4);
+			buffer.limit(end);
+			try {
+				decodeFrame(connection, buffer);
+			} catch (BufferUnderflowException e) {
+				throw new IOException("Truncated frame");
+			}
+			buffer.limit(limit);
+			buffer.position(end);
+		}
+	}
+
+	private void decodeFrame(Connection connection, ByteBuffer frame) throws IOException {
+		byte type = frame.get();
+		if(type == FleetProtocol.Hello) {
+			short version = frame.getShort();
+			if(version != FleetProtocol.Version)
+				throw new IOException("Unsupported protocol version " + version);
+			String name = FleetProtocol.readString(frame);
+			connection.node = admit(name, System.currentTimeMillis());
+			logger.debug("Agent " + name + " connected from " + connection.address);
+		}else if(type == FleetProtocol.Batch) {
+			if(connection.node == null)
+				throw new IOException("Batch before hello");
+			int count = frame.getShort() & 0xFFFF;
+			long now = System.currentTimeMillis();
+			//The node may have been evicted to make room while this agent was quiet
+			if(nodes.get(connection.node.getName()) != connection.node)
+				connection.node = admit(connection.node.getName(), now);
+			for(int i = 0; i < count; i++) {
+				connection.node.update(FleetProtocol.readSample(frame), now, connection.address);
+			}
+			samplesReceived.addAndGet(count);
+		}else {
+			throw new IOException("Unknown frame type " + type);
+		}
+	}
+
+	private FleetNode admit(String name, long now) throws IOException {
+		FleetNode node = nodes.get(name);
+		if(node != null)
+			return node;
+		if(nodes.size() >= maxNodes) {
+			nodes.values().removeIf(n -> !n.isOnline(now, nodeTimeout));
+			if(nodes.size() >= maxNodes)
+				throw new IOException("Node limit of " + maxNodes + " reached");
+		}
+		node = new FleetNode(name, now);
+		nodes.put(name, node);
+		return node;
+	}
+
+	private void close(SelectionKey key) {
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (IOException e) {}
+	}
+
+	private void closeQuietly() {
+		try {
+			if(selector != null) {
+				for(SelectionKey key : selector.keys()) {
+					key.channel().close();
+				}
+				selector.close();
+			}
+			if(server != null)
+				server.close();
+		} catch (IOException e) {
+			logger.debug("Error closing fleet collector: " + e.getMessage());
+		}
+	}
+
+	private static class Connection {
+
+		private final String address;
+		private ByteBuffer buffer = ByteBuffer.allocate(InitialBuffer);
+		private int need = 0;
+		private FleetNode node;
+
+		private Connection(String address) {
+			this.address = address;
+		}
+
+		//Grow only when a frame larger than the buffer is waiting to be completed
+		private void growIfFull() {
+			if(need > buffer.capacity()) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.min(FleetProtocol.MaxFrame + 4, Math.max(need, buffer.capacity() * 2)));
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+			need = 0;
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.fleet;
+
+import java.awt.Color;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.t07m.ssdn.FormatUtils;
+import com.t07m.ssdn.SSDNConfig;
+
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.utils.MarkdownSanitizer;
+
+/**
+ * Renders the collector's nodes as one line each, split over as many embeds
+ * as there are status messages. Rates and usages are the 1 minute averages.
+ */
+public class FleetEmbedBuilder {
+
+	private final SSDNConfig config;
+	private final int color;
+	private final String author;
+	private final String authorIcon;
+	private final int perPage;
+
+	private final StringBuilder sb = new StringBuilder(MessageEmbed.DESCRIPTION_MAX_LENGTH);
+
+	public FleetEmbedBuilder(SSDNConfig conf) {
+		this.config = conf;
+		this.color = new Color(Integer.parseInt(conf.getColorHex(), 16)).getRGB();
+		this.author = conf.getServerName();
+		this.authorIcon = conf.getIconURL().length()>0 ? conf.getIconURL() : null;
+		this.perPage = Math.max(1, conf.getFleetNodesPerPage());
+	}
+
+	public boolean isCompiledFor(SSDNConfig conf) {
+		return config == conf;
+	}
+
+	/**
+	 * @return one embed per target. Nodes that do not fit on the last page are counted there instead of listed.
+	 */
+	public List<MessageEmbed> buildPages(List<FleetNode> nodes, long now, long timeout, int targets) {
+		int online = 0;
+		for(FleetNode node : nodes) {
+			if(node.isOnline(now, timeout))
+				online++;
+		}
+		String footer = online + " of " + nodes.size() + " nodes online";
+		int pages = Math.max(1, Math.min(targets, (nodes.size() + perPage - 1) / perPage));
+		ArrayList<MessageEmbed> embeds = new ArrayList<MessageEmbed>(targets);
+		int next = 0;
+		for(int page = 0; page < targets; page++) {
+			sb.setLength(0);
+			if(page < pages) {
+				int end = Math.min(nodes.size(), next + perPage);
+				while(next < end) {
+					int mark = sb.length();
+					appendNode(nodes.get(next), now, timeout);
+					if(sb.length() > MessageEmbed.DESCRIPTION_MAX_LENGTH - 64) {
+						sb.setLength(mark);
+						break;
+					}
+					next++;
+				}
+				if(page == pages - 1 && next < nodes.size())
+					sb.append("*").append(nodes.size() - next).append(" more nodes not shown, add status messages to list them.*");
+			}
+			if(sb.length() == 0)
+				sb.append("*No nodes.*");
+			embeds.add(new EmbedBuilder()
+					.setColor(color)
+					.setAuthor(author, null, authorIcon)
+					.setTitle("Fleet Status (" + (page + 1) + "/" + targets + ")")
+					.setDescription(sb)
+					.setFooter(footer)
+					.setTimestamp(Instant.ofEpochMilli(now))
+					.build());
+		}
+		return embeds;
+	}
+
+	private void appendNode(FleetNode node, long now, long timeout) {
+		FleetSample sample = node.getSample();
+		boolean online = node.isOnline(now, timeout);
+		sb.append(online ? "🟢 **" : "🔴 **").append(MarkdownSanitizer.escape(node.getName())).append("**");
+		if(!online) {
+			sb.append(" offline since <t:").append(node.getLastSeen() / 1000).append(":R>\n");
+			return;
+		}
+		if(sample == null) {
+			sb.append(" waiting for data\n");
+			return;
+		}
+		long sent = 0, recv = 0;
+		for(int i = 0; i < sample.getInterfaceCount(); i++) {
+			sent += sample.getSent(i, 0);
+			recv += sample.getRecv(i, 0);
+		}
+		sb.append(" CPU ");
+		FormatUtils.appendDecimal(sb, sample.getCpu(0), 1).append('%');
+		sb.append(" RAM ");
+		FormatUtils.appendDecimal(sb, sample.getRam(0), 1).append('%');
+		if(sample.getTemp(0) > 0) {
+			sb.append(' ');
+			FormatUtils.appendDecimal(sb, sample.getTemp(0), 1).append("°C");
+		}
+		sb.append(" ↑");
+		FormatUtils.appendBits(sb, sent).append("ps ↓");
+		FormatUtils.appendBits(sb, recv).append("ps\n");
+	}
+
+}
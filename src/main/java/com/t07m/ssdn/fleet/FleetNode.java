@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.fleet;
+
+import lombok.Getter;
+
+/**
+ * What the collector knows about one agent.
+ */
+public class FleetNode {
+
+	private final @Getter String name;
+	private volatile @Getter FleetSample sample;
+	private volatile @Getter long lastSeen;
+	private volatile @Getter String address;
+
+	FleetNode(String name, long now) {
+		this.name = name;
+		this.lastSeen = now;
+	}
+
+	void update(FleetSample sample, long now, String address) {
+		FleetSample current = this.sample;
+		if(current == null || sample.getTime() >= current.getTime())
+			this.sample = sample;
+		this.lastSeen = now;
+		this.address = address;
+	}
+
+	public boolean isOnline(long now, long timeout) {
+		return now - lastSeen <= timeout;
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.fleet;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format between agents and the collector. Every frame is a 4 byte
+ * big endian length followed by that many bytes, the first being the frame type.
+ * <pre>
+ * HELLO  type, short version, string node
+ * BATCH  type, short count, count samples
+ * sample long time, long uptime, 12 floats (cpu, ram, swap, temp x 3 windows),
+ *        byte interfaces, per interface string name, 3 longs sent, 3 longs recv,
+ *        byte mounts, per mount string name, long free space
+ * string short length, UTF-8 bytes
+ * </pre>
+ * An agent sends HELLO once per connection and then batches of samples,
+ * several at a time when it is catching up after a reconnect.
+ */
+public class FleetProtocol {
+
+	public static final short Version = 1;
+	public static final byte Hello = 1;
+	public static final byte Batch = 2;
+	public static final int MaxFrame = 1 << 20;
+
+	private static final int MaxString = 255;
+
+	public static int beginFrame(ByteBuffer buffer, byte type) {
+		int start = buffer.position();
+		buffer.putInt(0);
+		buffer.put(type);
+		return start;
+	}
+
+	public static void endFrame(ByteBuffer buffer, int start) {
+		buffer.putInt(start, buffer.position() - start - 4);
+	}
+
+	public static void writeHello(ByteBuffer buffer, String node) {
+		int start = beginFrame(buffer, Hello);
+		buffer.putShort(Version);
+		writeString(buffer, node);
+		endFrame(buffer, start);
+	}
+
+	public static void writeSample(ByteBuffer buffer, FleetSample sample) {
+		buffer.putLong(sample.getTime());
+		buffer.putLong(sample.getUptime());
+		for(int w = 0; w < FleetSample.Windows; w++)
+			buffer.putFloat(sample.getCpu(w));
+		for(int w = 0; w < FleetSample.Windows; w++)
+			buffer.putFloat(sample.getRam(w));
+		for(int w = 0; w < FleetSample.Windows; w++)
+			buffer.putFloat(sample.getSwap(w));
+		for(int w = 0; w < FleetSample.Windows; w++)
+			buffer.putFloat(sample.getTemp(w));
+		int interfaces = Math.min(sample.getInterfaceCount(), 255);
+		buffer.put((byte) interfaces);
+		for(int i = 0; i < interfaces; i++) {
+			writeString(buffer, sample.getInterface(i));
+			for(int w = 0; w < FleetSample.Windows; w++)
+				buffer.putLong(sample.getSent(i, w));
+			for(int w = 0; w < FleetSample.Windows; w++)
+				buffer.putLong(sample.getRecv(i, w));
+		}
+		int mounts = Math.min(sample.getMountCount(), 255);
+		buffer.put((byte) mounts);
+		for(int i = 0; i < mounts; i++) {
+			writeString(buffer, sample.getMount(i));
+			buffer.putLong(sample.getFreeSpace(i));
+		}
+	}
+
+	/**
+	 * @throws BufferUnderflowException if the frame ends early
+	 */
+	public static FleetSample readSample(ByteBuffer buffer) {
+		long time = buffer.getLong();
+		long uptime = buffer.getLong();
+		float[] cpu = readFloats(buffer);
+		float[] ram = readFloats(buffer);
+		float[] swap = readFloats(buffer);
+		float[] temp = readFloats(buffer);
+		int interfaceCount = buffer.get() & 0xFF;
+		String[] interfaces = new String[interfaceCount];
+		long[] sent = new long[interfaceCount * FleetSample.Windows];
+		long[] recv = new long[interfaceCount * FleetSample.Windows];
+		for(int i = 0; i < interfaceCount; i++) {
+			interfaces[i] = readString(buffer);
+			for(int w = 0; w < FleetSample.Windows; w++)
+				sent[i * FleetSample.Windows + w] = buffer.getLong();
+			for(int w = 0; w < FleetSample.Windows; w++)
+				recv[i * FleetSample.Windows + w] = buffer.getLong();
+		}
+		int mountCount = buffer.get() & 0xFF;
+		String[] mounts = new String[mountCount];
+		long[] freeSpace = new long[mountCount];
+		for(int i = 0; i < mountCount; i++) {
+			mounts[i] = readString(buffer);
+			freeSpace[i] = buffer.getLong();
+		}
+		return new FleetSample(time, uptime, cpu, ram, swap, temp, interfaces, sent, recv, mounts, freeSpace);
+	}
+
+	private static float[] readFloats(ByteBuffer buffer) {
+		float[] values = new float[FleetSample.Windows];
+		for(int w = 0; w < values.length; w++)
+			values[w] = buffer.getFloat();
+		return values;
+	}
+
+	public static void writeString(ByteBuffer buffer, String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		int length = Math.min(bytes.length, MaxString);
+		//Back up over continuation bytes so a cut never splits a character
+		if(length < bytes.length) {
+			while(length > 0 && (bytes[length] & 0xC0) == 0x80)
+				length--;
+		}
+		buffer.putShort((short) length);
+		buffer.put(bytes, 0, length);
+	}
+
+	public static String readString(ByteBuffer buffer) {
+		int length = buffer.getShort() & 0xFFFF;
+		if(length > MaxString)
+			throw new IllegalArgumentException("String too long: " + length);
+		if(length > buffer.remaining())
+			throw new BufferUnderflowException();
+		String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return value;
+	}
+
+}
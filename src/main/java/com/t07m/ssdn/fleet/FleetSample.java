@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.fleet;
+
+import java.util.concurrent.TimeUnit;
+
+import com.t07m.ssdn.metrics.MetricsSnapshot;
+
+import lombok.Getter;
+
+/**
+ * The part of a {@link MetricsSnapshot} an agent sends to the collector.
+ * Usages are percentages, temperatures degrees Celsius and rates bits per
+ * second, each over the 1, 5 and 15 minute windows in that order.
+ */
+public class FleetSample {
+
+	public static final int Windows = 3;
+
+	private static final long[] WindowMillis = {
+			TimeUnit.MINUTES.toMillis(1),
+			TimeUnit.MINUTES.toMillis(5),
+			TimeUnit.MINUTES.toMillis(15)};
+
+	private final @Getter long time;
+	private final @Getter long uptime;
+	private final float[] cpu;
+	private final float[] ram;
+	private final float[] swap;
+	private final float[] temp;
+	private final String[] interfaces;
+	private final long[] sent;
+	private final long[] recv;
+	private final String[] mounts;
+	private final long[] freeSpace;
+
+	FleetSample(long time, long uptime, float[] cpu, float[] ram, float[] swap, float[] temp,
+			String[] interfaces, long[] sent, long[] recv, String[] mounts, long[] freeSpace) {
+		this.time = time;
+		this.uptime = uptime;
+		this.cpu = cpu;
+		this.ram = ram;
+		this.swap = swap;
+		this.temp = temp;
+		this.interfaces = interfaces;
+		this.sent = sent;
+		this.recv = recv;
+		this.mounts = mounts;
+		this.freeSpace = freeSpace;
+	}
+
+	public static FleetSample of(MetricsSnapshot snapshot, String[] interfaces, String[] mounts) {
+		float[] cpu = new float[Windows];
+		float[] ram = new float[Windows];
+		float[] swap = new float[Windows];
+		float[] temp = new float[Windows];
+		long[] sent = new long[interfaces.length * Windows];
+		long[] recv = new long[interfaces.length * Windows];
+		for(int w = 0; w < Windows; w++) {
+			cpu[w] = (float) snapshot.getCpuUsage(WindowMillis[w], 2);
+			ram[w] = (float) snapshot.getRamUsage(WindowMillis[w], 2);
+			swap[w] = (float) snapshot.getSwapUsage(WindowMillis[w], 2);
+			temp[w] = (float) snapshot.getTemp(WindowMillis[w], 1);
+			for(int i = 0; i < interfaces.length; i++) {
+				sent[i * Windows + w] = snapshot.getSent(interfaces[i], WindowMillis[w]);
+				recv[i * Windows + w] = snapshot.getRecv(interfaces[i], WindowMillis[w]);
+			}
+		}
+		long[] freeSpace = new long[mounts.length];
+		for(int i = 0; i < mounts.length; i++) {
+			freeSpace[i] = snapshot.getFreeSpace(mounts[i]);
+		}
+		return new FleetSample(snapshot.getTime(), snapshot.getUptime(), cpu, ram, swap, temp,
+				interfaces.clone(), sent, recv, mounts.clone(), freeSpace);
+	}
+
+	public float getCpu(int window) {
+		return cpu[window];
+	}
+
+	public float getRam(int window) {
+		return ram[window];
+	}
+
+	public float getSwap(int window) {
+		return swap[window];
+	}
+
+	public float getTemp(int window) {
+		return temp[window];
+	}
+
+	public int getInterfaceCount() {
+		return interfaces.length;
+	}
+
+	public String getInterface(int i) {
+		return interfaces[i];
+	}
+
+	public long getSent(int i, int window) {
+		return sent[i * Windows + window];
+	}
+
+	public long getRecv(int i, int window) {
+		return recv[i * Windows + window];
+	}
+
+	public int getMountCount() {
+		return mounts.length;
+	}
+
+	public String getMount(int i) {
+		return mounts[i];
+	}
+
+	public long getFreeSpace(int i) {
+		return freeSpace[i];
+	}
+
+}
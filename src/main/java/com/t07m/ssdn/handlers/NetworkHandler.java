@@ -15,11 +15,14 @@
  */
 package com.t07m.ssdn.handlers;
 
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.t07m.ssdn.providers.HardwareSource;
 import com.t07m.ssdn.providers.OSHIProvider;
 
 import oshi.hardware.NetworkIF;
@@ -28,12 +31,14 @@ public class NetworkHandler {
 
 	private static final Logger logger = LoggerFactory.getLogger(NetworkHandler.class);
 
+	private static volatile Map<String, NetworkIF> interfaces;
+
 	public static String[] getInterfaceNames() {
-		ArrayList<String> names = new ArrayList<String>();
-		for(NetworkIF nif : OSHIProvider.getHardware().getNetworkIFs(false)) {
-			names.add(nif.getName());
-		}
-		return names.toArray(new String[names.size()]);
+		HardwareSource source = OSHIProvider.getSource();
+		String[] names = source != null ? source.getInterfaceNames() : null;
+		if(names != null)
+			return names.clone();
+		return getInterfaces().keySet().toArray(new String[0]);
 	}
 
 	public static long getInterfaceSpeed(String name) {
@@ -43,11 +48,44 @@ public class NetworkHandler {
 		return -1;
 	}
 
-	private static NetworkIF getInterface(String name) {
+	public static NetworkIF getInterface(String name) {
+		return getInterfaces().get(name);
+	}
+
+	/**
+	 * Enumerates the network interfaces again and replaces the cached handles.
+	 * Enumeration is expensive, so this is left to a background service rather
+	 * than being done on every lookup.
+	 */
+	public static synchronized void refresh() {
+		HardwareSource source = OSHIProvider.getSource();
+		if(source != null && source.getInterfaceNames() != null) {
+			//The source reads its own counters, there are no OSHI handles to keep
+			interfaces = Collections.emptyMap();
+			return;
+		}
+		Map<String, NetworkIF> previous = interfaces;
+		LinkedHashMap<String, NetworkIF> found = new LinkedHashMap<String, NetworkIF>();
 		for(NetworkIF nif : OSHIProvider.getHardware().getNetworkIFs(false)) {
-			if(nif.getName().equals(name))
-				return nif;
+			found.put(nif.getName(), nif);
+			if(previous != null && !previous.containsKey(nif.getName()))
+				logger.debug("Network interface discovered: " + nif.getName());
+		}
+		if(previous != null) {
+			for(String name : previous.keySet()) {
+				if(!found.containsKey(name))
+					logger.debug("Network interface removed: " + name);
+			}
+		}
+		interfaces = Collections.unmodifiableMap(found);
+	}
+
+	private static Map<String, NetworkIF> getInterfaces() {
+		Map<String, NetworkIF> cached = interfaces;
+		if(cached == null) {
+			refresh();
+			cached = interfaces;
 		}
-		return null;
+		return cached;
 	}
 }
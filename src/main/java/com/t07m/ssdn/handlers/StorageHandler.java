@@ -15,11 +15,19 @@
  */
 package com.t07m.ssdn.handlers;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.t07m.ssdn.providers.HardwareSource;
 import com.t07m.ssdn.providers.OSHIProvider;
 
 import oshi.software.os.OSFileStore;
@@ -28,36 +36,114 @@ public class StorageHandler {
 
 	private static final Logger logger = LoggerFactory.getLogger(StorageHandler.class);
 
+	private static volatile Map<String, Mount> mounts;
+
 	public static String[] getMountPoints() {
-		ArrayList<String> mountpoints = new ArrayList<String>();
-		for(OSFileStore os : OSHIProvider.getOperatingSystem().getFileSystem().getFileStores()) {
-			if(os.getMount() != null)
-				mountpoints.add(os.getMount());
-		}
-		return mountpoints.toArray(new String[mountpoints.size()]);
+		HardwareSource source = getListingSource();
+		if(source != null)
+			return source.getMountPoints().clone();
+		return getMounts().keySet().toArray(new String[0]);
 	}
 
 	public static long getFreeSpace(String mountPoint) {
-		OSFileStore fs = getFileStore(mountPoint);
-		if(fs != null) {
-			return fs.getFreeSpace();
+		HardwareSource source = getListingSource();
+		if(source != null)
+			return source.readFreeSpace(mountPoint);
+		Mount mount = getMounts().get(mountPoint);
+		if(mount != null) {
+			return mount.getFreeSpace();
 		}
 		return -1;
 	}
 
 	public static long getTotalSpace(String mountPoint) {
-		OSFileStore fs = getFileStore(mountPoint);
-		if(fs != null) {
-			return fs.getTotalSpace();
+		HardwareSource source = getListingSource();
+		if(source != null)
+			return source.readTotalSpace(mountPoint);
+		Mount mount = getMounts().get(mountPoint);
+		if(mount != null) {
+			return mount.getTotalSpace();
 		}
 		return -1;
 	}
 
-	private static OSFileStore getFileStore(String mountPoint) {
+	/**
+	 * Enumerates the file stores again and replaces the mount index.
+	 * Lookups between refreshes only query the one store they need.
+	 */
+	public static synchronized void refresh() {
+		if(getListingSource() != null) {
+			mounts = Collections.emptyMap();
+			return;
+		}
+		LinkedHashMap<String, Mount> found = new LinkedHashMap<String, Mount>();
 		for(OSFileStore os : OSHIProvider.getOperatingSystem().getFileSystem().getFileStores()) {
-			if(os.getMount() != null && os.getMount().equals(mountPoint))
-				return os;				
+			if(os.getMount() != null)
+				found.put(os.getMount(), new Mount(os, openFileStore(os.getMount())));
+		}
+		mounts = Collections.unmodifiableMap(found);
+		logger.debug("Indexed " + found.size() + " mount points");
+	}
+
+	//A source that lists its own mounts also reports their space
+	private static HardwareSource getListingSource() {
+		HardwareSource source = OSHIProvider.getSource();
+		return source != null && source.getMountPoints() != null ? source : null;
+	}
+
+	private static FileStore openFileStore(String mountPoint) {
+		try {
+			return Files.getFileStore(Paths.get(mountPoint));
+		} catch (IOException | InvalidPathException | SecurityException e) {
+			logger.debug("Unable to open file store for " + mountPoint + ": " + e.getMessage());
 		}
 		return null;
 	}
+
+	private static Map<String, Mount> getMounts() {
+		Map<String, Mount> cached = mounts;
+		if(cached == null) {
+			refresh();
+			cached = mounts;
+		}
+		return cached;
+	}
+
+	private static class Mount {
+
+		private final OSFileStore store;
+		private final FileStore fileStore;
+
+		private Mount(OSFileStore store, FileStore fileStore) {
+			this.store = store;
+			this.fileStore = fileStore;
+		}
+
+		//A single statvfs on the mount, where OSHI would parse every mount again
+		private long getFreeSpace() {
+			if(fileStore != null) {
+				try {
+					return fileStore.getUnallocatedSpace();
+				} catch (IOException e) {
+					logger.debug("Unable to read file store " + store.getMount() + ": " + e.getMessage());
+				}
+			}
+			synchronized(store) {
+				return store.updateAttributes() ? store.getFreeSpace() : -1;
+			}
+		}
+
+		private long getTotalSpace() {
+			if(fileStore != null) {
+				try {
+					return fileStore.getTotalSpace();
+				} catch (IOException e) {
+					logger.debug("Unable to read file store " + store.getMount() + ": " + e.getMessage());
+				}
+			}
+			synchronized(store) {
+				return store.updateAttributes() ? store.getTotalSpace() : -1;
+			}
+		}
+	}
 }
@@ -15,9 +15,6 @@
  */
 package com.t07m.ssdn.listeners;
 
-import java.awt.Color;
-import java.time.Instant;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,11 +24,12 @@ import lombok.RequiredArgsConstructor;
 import net.cubespace.Yamler.Config.InvalidConfigurationException;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.Permission;
-import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.channel.ChannelType;
-import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.events.session.ReadyEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
-import net.dv8tion.jda.internal.utils.PermissionUtil;
+import net.dv8tion.jda.api.interactions.commands.DefaultMemberPermissions;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
 
 @RequiredArgsConstructor
 public class StatusCommandListener extends ListenerAdapter{
@@ -39,29 +37,44 @@ public class StatusCommandListener extends ListenerAdapter{
 	private static final Logger logger = LoggerFactory.getLogger(StatusCommandListener.class);
 
 	private final ServerStatusDiscordNode app;
-	
-	public void onMessageReceived(MessageReceivedEvent e) {
-		if(e.getAuthor().isBot() || e.getChannelType() == ChannelType.PRIVATE)
+
+	public void onReady(ReadyEvent e) {
+		String name = app.getConfig().getInitCommandName();
+		//Only the bot's own command is delivered, so no message content intent is needed.
+		//Upserted rather than replacing the command set, nodes sharing a bot token each keep theirs
+		e.getJDA().upsertCommand(
+				Commands.slash(name, "Post a status message for " + app.getConfig().getServerName() + " in this channel")
+				.setGuildOnly(true)
+				.setDefaultPermissions(DefaultMemberPermissions.enabledFor(Permission.ADMINISTRATOR)))
+		.queue(commands -> logger.debug("Registered /" + name),
+				error -> logger.error("Unable to register /" + name + ": " + error.getMessage()));
+	}
+
+	public void onSlashCommandInteraction(SlashCommandInteractionEvent e) {
+		if(!e.getName().equals(app.getConfig().getInitCommandName()))
+			return;
+		if(e.getChannelType() != ChannelType.TEXT || e.getMember() == null || !e.getMember().hasPermission(Permission.ADMINISTRATOR)) {
+			e.reply("Status messages can only be created in text channels by administrators.").setEphemeral(true).queue();
 			return;
-		Message msg = e.getMessage();
-		if(msg.getContentRaw().equalsIgnoreCase(app.getConfig().getInitCommand().replace("<ServerName>", app.getConfig().getServerName())) && PermissionUtil.checkPermission(e.getMember(), Permission.ADMINISTRATOR)) {
-			e.getChannel().sendMessageEmbeds(new EmbedBuilder().setTitle("Placeholder").build())
-			.queue(response -> {
-				if(app.getConfig().getMessageID() != -1) {
-					logger.info("New Static Node requested. Deleting old Satic Node.");
-					e.getJDA().getTextChannelById(app.getConfig().getChannelID()).deleteMessageById(app.getConfig().getMessageID()).queue();
-				}else {
-					logger.info("New Static Node requested.");
-				}
-				app.getConfig().setChannelID(response.getChannel().getIdLong());
-				app.getConfig().setMessageID(response.getIdLong());
-				try {
-					app.getConfig().save();
-				} catch (InvalidConfigurationException e1) {
-					logger.error(e.getMessage().toString());
-				}
-			});
 		}
+		e.reply("Creating status message.").setEphemeral(true).queue();
+		//Sent as a normal message, interaction replies can only be edited for a short time
+		e.getChannel().sendMessageEmbeds(new EmbedBuilder().setTitle("Placeholder").build())
+		.queue(response -> {
+			//Each channel holds one node, other channels keep theirs
+			long replaced = app.getConfig().addStatusMessage(response.getChannel().getIdLong(), response.getIdLong());
+			if(replaced != -1) {
+				logger.info("New Static Node requested. Deleting old Satic Node in this channel.");
+				response.getChannel().deleteMessageById(replaced).queue(null, error -> logger.warn("Unable to delete old Static Node: " + error.getMessage()));
+			}else {
+				logger.info("New Static Node requested.");
+			}
+			try {
+				app.getConfig().save();
+			} catch (InvalidConfigurationException e1) {
+				logger.error(e1.getMessage());
+			}
+		});
 	}
 
 }
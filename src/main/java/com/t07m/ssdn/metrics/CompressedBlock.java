@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.metrics;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Up to {@link #Samples} samples packed into a bit stream, in the manner of
+ * Facebook's Gorilla: timestamps as delta-of-deltas, gauge values as the XOR
+ * against the previous value and counter totals as varint deltas. Each block
+ * decodes on its own from its header, which also carries the count, sum, min
+ * and max so window queries only decode the block a window starts in.
+ * <p>
+ * The open block writes into a worst case buffer shared by its series and is
+ * copied down to its encoded size when sealed.
+ */
+final class CompressedBlock {
+
+	public static final int Samples = 128;
+
+	//Worst case per sample: a 5 bit prefix and raw 64 bit delta-of-delta, then a 10 byte varint
+	private static final int MaxSampleBits = 5 + 64 + 80;
+	public static final int BufferWords = (Samples * MaxSampleBits + 63) / 64 + 1;
+	//Object and array headers, references and the fields below
+	public static final int HeaderBytes = 16 + 16 + 8 * 8 + 6 * 4;
+	//count, words, first and last time and first total ahead of the stream when stored
+	public static final int StoredHeader = 4 + 4 + 3 * 8;
+
+	private long[] bits;
+	private int length;
+	private int cursor;
+	private boolean sealed;
+
+	int count;
+	long firstTime, lastTime;
+	double sum;
+	float min, max;
+	long firstTotal, lastTotal;
+
+	private long previousDelta;
+	private int previousBits;
+	private int leading, trailing;
+
+	void open(long[] buffer) {
+		Arrays.fill(buffer, 0);
+		bits = buffer;
+		length = 0;
+		sealed = false;
+		count = 0;
+		sum = 0;
+		previousDelta = 0;
+		leading = -1;
+	}
+
+	boolean isFull() {
+		return count == Samples;
+	}
+
+	/**
+	 * Copies the stream out of the shared buffer, after which it can no longer be appended to.
+	 */
+	void seal() {
+		if(sealed)
+			return;
+		bits = Arrays.copyOf(bits, (length + 63) / 64);
+		sealed = true;
+	}
+
+	int encodedBytes() {
+		return HeaderBytes + (sealed ? bits.length * 8 : (length + 63) / 64 * 8);
+	}
+
+	/**
+	 * @return bytes {@link #store} writes for this sealed block.
+	 */
+	int storedBytes() {
+		return StoredHeader + bits.length * 8;
+	}
+
+	/**
+	 * Writes a sealed block with what it takes to decode it again, but not the summary used by window queries.
+	 */
+	void store(ByteBuffer buffer, int offset) {
+		buffer.putInt(offset, count);
+		buffer.putInt(offset + 4, bits.length);
+		buffer.putLong(offset + 8, firstTime);
+		buffer.putLong(offset + 16, lastTime);
+		buffer.putLong(offset + 24, firstTotal);
+		for(int i = 0; i < bits.length; i++)
+			buffer.putLong(offset + StoredHeader + i * 8, bits[i]);
+	}
+
+	/**
+	 * Reads back a stored block for decoding, its stream going into the buffer.
+	 * @return false if what is stored there is not a block.
+	 */
+	boolean load(ByteBuffer buffer, int offset, long[] words) {
+		int count = buffer.getInt(offset);
+		int length = buffer.getInt(offset + 4);
+		if(count < 1 || count > Samples || length < 0 || length > words.length)
+			return false;
+		for(int i = 0; i < length; i++)
+			words[i] = buffer.getLong(offset + StoredHeader + i * 8);
+		this.bits = words;
+		this.length = length * 64;
+		this.sealed = true;
+		this.count = count;
+		this.firstTime = buffer.getLong(offset + 8);
+		this.lastTime = buffer.getLong(offset + 16);
+		this.firstTotal = buffer.getLong(offset + 24);
+		return true;
+	}
+
+	void appendGauge(long time, float value) {
+		appendTime(time);
+		int raw = Float.floatToRawIntBits(value);
+		if(count == 0) {
+			write(raw, 32);
+			min = value;
+			max = value;
+		}else {
+			int xor = raw ^ previousBits;
+			if(xor == 0) {
+				write(0, 1);
+			}else {
+				int lead = Integer.numberOfLeadingZeros(xor);
+				int trail = Integer.numberOfTrailingZeros(xor);
+				if(leading >= 0 && lead >= leading && trail >= trailing) {
+					//Fits the previous window of meaningful bits
+					write(0b10, 2);
+					write(xor >>> trailing, 32 - leading - trailing);
+				}else {
+					int meaningful = 32 - lead - trail;
+					write(0b11, 2);
+					write(lead, 5);
+					write(meaningful - 1, 5);
+					write(xor >>> trail, meaningful);
+					leading = lead;
+					trailing = trail;
+				}
+			}
+			if(value < min)
+				min = value;
+			if(value > max)
+				max = value;
+		}
+		previousBits = raw;
+		sum += value;
+		count++;
+	}
+
+	/**
+	 * @param total the unwrapped counter, never below the previous total.
+	 */
+	void appendCounter(long time, long total) {
+		appendTime(time);
+		if(count == 0) {
+			firstTotal = total;
+		}else {
+			long delta = total - lastTotal;
+			while((delta & ~0x7FL) != 0) {
+				write((delta & 0x7F) | 0x80, 8);
+				delta >>>= 7;
+			}
+			write(delta, 8);
+		}
+		lastTotal = total;
+		count++;
+	}
+
+	private void appendTime(long time) {
+		if(count == 0) {
+			firstTime = time;
+		}else {
+			long delta = time - lastTime;
+			long dod = delta - previousDelta;
+			if(dod == 0) {
+				write(0, 1);
+			}else if(dod >= -64 && dod < 64) {
+				write(0b10, 2);
+				write(dod, 7);
+			}else if(dod >= -256 && dod < 256) {
+				write(0b110, 3);
+				write(dod, 9);
+			}else if(dod >= -2048 && dod < 2048) {
+				write(0b1110, 4);
+				write(dod, 12);
+			}else if(dod >= Integer.MIN_VALUE && dod <= Integer.MAX_VALUE) {
+				write(0b11110, 5);
+				write(dod, 32);
+			}else {
+				write(0b11111, 5);
+				write(dod, 64);
+			}
+			previousDelta = delta;
+		}
+		lastTime = time;
+	}
+
+	/**
+	 * @return the number of samples decoded into the arrays, which hold at least {@link #Samples}.
+	 */
+	int decodeGauge(long[] times, float[] values) {
+		cursor = 0;
+		long time = firstTime;
+		long delta = 0;
+		int raw = 0;
+		int lead = 0, trail = 0;
+		for(int i = 0; i < count; i++) {
+			if(i == 0) {
+				raw = (int) read(32);
+			}else {
+				delta += readDeltaOfDelta();
+				time += delta;
+				if(read(1) == 1) {
+					if(read(1) == 1) {
+						lead = (int) read(5);
+						trail = 32 - lead - ((int) read(5) + 1);
+					}
+					raw ^= (int) (read(32 - lead - trail) << trail);
+				}
+			}
+			times[i] = time;
+			values[i] = Float.intBitsToFloat(raw);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of readings decoded into the arrays, which hold at least {@link #Samples}.
+	 */
+	int decodeCounter(long[] times, long[] totals) {
+		cursor = 0;
+		long time = firstTime;
+		long delta = 0;
+		long total = firstTotal;
+		for(int i = 0; i < count; i++) {
+			if(i > 0) {
+				delta += readDeltaOfDelta();
+				time += delta;
+				long value = 0;
+				int shift = 0;
+				long group;
+				do {
+					group = read(8);
+					value |= (group & 0x7F) << shift;
+					shift += 7;
+				} while((group & 0x80) != 0);
+				total += value;
+			}
+			times[i] = time;
+			totals[i] = total;
+		}
+		return count;
+	}
+
+	private long readDeltaOfDelta() {
+		if(read(1) == 0)
+			return 0;
+		if(read(1) == 0)
+			return signed(read(7), 7);
+		if(read(1) == 0)
+			return signed(read(9), 9);
+		if(read(1) == 0)
+			return signed(read(12), 12);
+		if(read(1) == 0)
+			return signed(read(32), 32);
+		return read(64);
+	}
+
+	private static long signed(long value, int n) {
+		return (value << (64 - n)) >> (64 - n);
+	}
+
+	private void write(long value, int n) {
+		if(n == 0)
+			return;
+		if(n < 64)
+			value &= (1L << n) - 1;
+		int word = length >>> 6;
+		int free = 64 - (length & 63);
+		if(n <= free) {
+			bits[word] |= value << (free - n);
+		}else {
+			bits[word] |= value >>> (n - free);
+			bits[word + 1] |= value << (64 - (n - free));
+		}
+		length += n;
+	}
+
+	private long read(int n) {
+		if(n == 0)
+			return 0;
+		int word = cursor >>> 6;
+		int free = 64 - (cursor & 63);
+		long value;
+		if(n <= free)
+			value = bits[word] >>> (free - n);
+		else
+			value = (bits[word] << (n - free)) | (bits[word + 1] >>> (64 - (n - free)));
+		cursor += n;
+		return n == 64 ? value : value & ((1L << n) - 1);
+	}
+
+}
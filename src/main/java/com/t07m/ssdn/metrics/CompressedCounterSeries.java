@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.metrics;
+
+import java.util.Arrays;
+
+/**
+ * A {@link CounterSeries} kept as a ring of {@link CompressedBlock}s. Readings
+ * are unwrapped into a monotonic total as they are added and stored as
+ * varint deltas, with a raw copy of the open block.
+ * <p>
+ * Each window keeps the time and total of the reading it starts at, so a
+ * rate is a single subtraction. Moving that start steps through the one
+ * decoded block it is in, and jumps over blocks that are wholly behind it
+ * using their headers.
+ */
+public class CompressedCounterSeries implements RateSeries {
+
+	private static final int Samples = CompressedBlock.Samples;
+
+	private final CompressedBlock[] blocks;
+	private final int capacity;
+	private final long[] buffer = new long[CompressedBlock.BufferWords];
+	private final long[] openTimes = new long[Samples];
+	private final long[] openTotals = new long[Samples];
+	private int head = 0;
+	private int count = 0;
+	private long first = 0;
+	private long floor = Long.MIN_VALUE;
+
+	private long lastCounter = 0;
+	private long total = 0;
+
+	private final long[] windows;
+	private final long[] windowBlocks;
+	private final int[] windowIndexes;
+	private final long[] startTimes;
+	private final long[] startTotals;
+	private final long[] decodedBlocks;
+	private final long[][] decodedTimes;
+	private final long[][] decodedTotals;
+
+	public CompressedCounterSeries(int capacity, long... windows) {
+		if(capacity < 2)
+			throw new IllegalArgumentException("Capacity must be at least 2: " + capacity);
+		this.capacity = capacity;
+		this.blocks = new CompressedBlock[(capacity + Samples - 1) / Samples + 2];
+		for(int i = 0; i < blocks.length; i++) {
+			blocks[i] = new CompressedBlock();
+		}
+		this.windows = windows.clone();
+		this.windowBlocks = new long[windows.length];
+		this.windowIndexes = new int[windows.length];
+		this.startTimes = new long[windows.length];
+		this.startTotals = new long[windows.length];
+		this.decodedBlocks = new long[windows.length];
+		this.decodedTimes = new long[windows.length][Samples];
+		this.decodedTotals = new long[windows.length][Samples];
+		Arrays.fill(decodedBlocks, -1);
+	}
+
+	public void add(long time, long counter) {
+		boolean empty = count == 0;
+		if(!empty) {
+			total += CounterSeries.delta(lastCounter, counter);
+		}
+		lastCounter = counter;
+		CompressedBlock open = empty ? null : blocks[index(count-1)];
+		if(open == null || open.isFull()) {
+			if(open != null)
+				open.seal();
+			if(count == blocks.length)
+				evictOldest();
+			open = blocks[index(count)];
+			open.open(buffer);
+			count++;
+		}
+		openTimes[open.count] = time;
+		openTotals[open.count] = total;
+		open.appendCounter(time, total);
+		for(int w = 0; w < windows.length; w++) {
+			if(empty) {
+				windowBlocks[w] = first;
+				windowIndexes[w] = 0;
+				startTimes[w] = time;
+				startTotals[w] = total;
+			}
+			advance(w, time - windows[w]);
+		}
+	}
+
+	public void evictOlderThan(long cutoff) {
+		if(count == 0)
+			return;
+		//Always keep the newest reading so the next delta has a base
+		long newest = blocks[index(count-1)].lastTime;
+		long limit = Math.min(cutoff, newest - 1);
+		if(limit <= floor)
+			return;
+		floor = limit;
+		for(int w = 0; w < windows.length; w++) {
+			advance(w, newest - windows[w]);
+		}
+		while(count > 1 && blocks[head].lastTime <= floor) {
+			dropOldest();
+		}
+	}
+
+	/**
+	 * @return the average rate over the window in counter units per second.
+	 */
+	public double average(long window) {
+		int w = windowIndex(window);
+		if(count == 0)
+			return 0;
+		CompressedBlock newest = blocks[index(count-1)];
+		long elapsed = newest.lastTime - startTimes[w];
+		if(elapsed <= 0)
+			return 0;
+		return (newest.lastTotal - startTotals[w]) * 1000.0 / elapsed;
+	}
+
+	public long[] getWindows() {
+		return windows.clone();
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return bytes held by the encoded blocks and their headers, the open block buffer and the decoded blocks.
+	 */
+	public long footprint() {
+		long bytes = (buffer.length + openTimes.length + openTotals.length) * 8L + windows.length * Samples * 16L;
+		for(int b = 0; b < count; b++) {
+			bytes += blocks[index(b)].encodedBytes();
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return the readings held, including any past the last cutoff that are awaiting the rest of their block.
+	 */
+	public int size() {
+		int size = 0;
+		for(int b = 0; b < count; b++) {
+			size += blocks[index(b)].count;
+		}
+		return size;
+	}
+
+	public void clear() {
+		head = 0;
+		count = 0;
+		first = 0;
+		floor = Long.MIN_VALUE;
+		total = 0;
+		lastCounter = 0;
+		Arrays.fill(decodedBlocks, -1);
+	}
+
+	/**
+	 * Moves the start of a window to the newest reading at or before the
+	 * cutoff, and off any reading at or before the eviction floor.
+	 */
+	private void advance(int w, long cutoff) {
+		long open = first + count - 1;
+		long behind = Math.max(cutoff, floor);
+		while(true) {
+			long sequence = windowBlocks[w];
+			int i = windowIndexes[w];
+			CompressedBlock block = block(sequence);
+			if(i + 1 < block.count) {
+				if(sequence != open && block.lastTime <= behind) {
+					//Every reading left in the block is behind the window, take the last from the header
+					move(w, sequence, block.count - 1, block.lastTime, block.lastTotal);
+					continue;
+				}
+				long[] times = openTimes;
+				long[] totals = openTotals;
+				if(sequence != open) {
+					decode(w, sequence);
+					times = decodedTimes[w];
+					totals = decodedTotals[w];
+				}
+				if(times[i + 1] > cutoff && startTimes[w] > floor)
+					return;
+				move(w, sequence, i + 1, times[i + 1], totals[i + 1]);
+			}else if(sequence < open) {
+				CompressedBlock next = block(sequence + 1);
+				if(next.firstTime > cutoff && startTimes[w] > floor)
+					return;
+				if(sequence + 1 != open && next.lastTime <= behind)
+					move(w, sequence + 1, next.count - 1, next.lastTime, next.lastTotal);
+				else
+					move(w, sequence + 1, 0, next.firstTime, next.firstTotal);
+			}else {
+				return;
+			}
+		}
+	}
+
+	private void move(int w, long sequence, int i, long time, long total) {
+		windowBlocks[w] = sequence;
+		windowIndexes[w] = i;
+		startTimes[w] = time;
+		startTotals[w] = total;
+	}
+
+	private void decode(int w, long sequence) {
+		if(decodedBlocks[w] == sequence)
+			return;
+		block(sequence).decodeCounter(decodedTimes[w], decodedTotals[w]);
+		decodedBlocks[w] = sequence;
+	}
+
+	private void evictOldest() {
+		CompressedBlock oldest = blocks[head];
+		if(oldest.lastTime > floor)
+			floor = oldest.lastTime;
+		long newest = blocks[index(count-1)].lastTime;
+		for(int w = 0; w < windows.length; w++) {
+			advance(w, newest - windows[w]);
+		}
+		dropOldest();
+	}
+
+	private void dropOldest() {
+		head = head + 1 == blocks.length ? 0 : head + 1;
+		count--;
+		first++;
+	}
+
+	private CompressedBlock block(long sequence) {
+		return blocks[index((int) (sequence - first))];
+	}
+
+	private int windowIndex(long window) {
+		for(int w = 0; w < windows.length; w++) {
+			if(windows[w] == window)
+				return w;
+		}
+		throw new IllegalArgumentException("Window not tracked: " + window);
+	}
+
+	private int index(int i) {
+		int idx = head + i;
+		return idx >= blocks.length ? idx - blocks.length : idx;
+	}
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.metrics;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link SeriesJournal} for series kept as {@link CompressedBlock}s. Only
+ * the samples of the open block are written as raw records; every
+ * {@link CompressedBlock#Samples} of them are encoded into a block and
+ * appended to a ring of stored blocks, so the journal costs about what the
+ * series itself does rather than sixteen bytes a sample.
+ * <pre>
+ * ring    the raw records of the open block, as in {@link SeriesJournal}
+ * header  long time of the last stored sample, long next block sequence, long write offset
+ * table   an entry per block of long sequence, int offset, int length
+ * data    stored blocks, wrapping to the start when the next one does not fit
+ * </pre>
+ * The data is sized for {@link #BytesPerSample} over the full capacity. Blocks
+ * that compress worse than that are written over oldest first, which only
+ * shortens the history a restart picks up. A block is written before the
+ * table entry and header that publish it, and its samples stay in the ring
+ * until then, so a crash in between stores it again on the next run.
+ */
+public class CompressedSeriesJournal extends SeriesJournal {
+
+	private static final int Samples = CompressedBlock.Samples;
+
+	//Measured blocks take 2.5 to 6 bytes a sample, this leaves room for noisier series
+	public static final int BytesPerSample = 8;
+
+	private static final int Ring = SeriesJournal.regionSize(Samples);
+	private static final int HeaderSize = 24;
+	private static final int EntrySize = 16;
+	private static final int MaxStored = CompressedBlock.StoredHeader + CompressedBlock.BufferWords * 8;
+
+	private final ByteBuffer buffer;
+	private final int blocks;
+	private final int table;
+	private final int data;
+	private final int dataBytes;
+	private final long[] openTimes = new long[Samples];
+	private final long[] openValues = new long[Samples];
+	private final long[] stream = new long[CompressedBlock.BufferWords];
+	private int open;
+	private long nextSequence;
+	private int writeOffset;
+
+	CompressedSeriesJournal(ByteBuffer buffer, int capacity) {
+		super(buffer, Samples);
+		this.buffer = buffer;
+		this.blocks = blocksFor(capacity);
+		this.table = Ring + HeaderSize;
+		this.data = table + blocks * EntrySize;
+		this.dataBytes = dataBytesFor(capacity);
+		this.nextSequence = Math.max(1, buffer.getLong(Ring + 8));
+		this.writeOffset = (int) Math.min(Math.max(0, buffer.getLong(Ring + 16)), dataBytes);
+		this.open = records(buffer.getLong(Ring), openTimes, openValues);
+	}
+
+	static int regionSize(int capacity) {
+		return Ring + HeaderSize + blocksFor(capacity) * EntrySize + dataBytesFor(capacity);
+	}
+
+	private static int blocksFor(int capacity) {
+		//One more for the block still open in the series and one for the block it is evicting
+		return (capacity + Samples - 1) / Samples + 2;
+	}
+
+	private static int dataBytesFor(int capacity) {
+		return Math.max(capacity * BytesPerSample, MaxStored * 2);
+	}
+
+	public void append(long time, float value) {
+		if(open == Samples)
+			seal(false);
+		long bits = Float.floatToRawIntBits(value);
+		write(time, bits);
+		openTimes[open] = time;
+		openValues[open++] = bits;
+	}
+
+	public void append(long time, long value) {
+		if(open == Samples)
+			seal(true);
+		write(time, value);
+		openTimes[open] = time;
+		openValues[open++] = value;
+	}
+
+	public void restore(GaugeSeries series, long since, long until) {
+		long last = Long.MIN_VALUE;
+		long[] times = new long[Samples];
+		float[] values = new float[Samples];
+		long[] words = new long[CompressedBlock.BufferWords];
+		CompressedBlock block = new CompressedBlock();
+		for(long s = oldestSequence(); s < nextSequence; s++) {
+			if(!load(block, s, words) || block.lastTime <= since)
+				continue;
+			int count = block.decodeGauge(times, values);
+			for(int i = 0; i < count; i++) {
+				if(times[i] > since && times[i] <= until && times[i] > last) {
+					series.add(times[i], values[i]);
+					last = times[i];
+				}
+			}
+		}
+		for(int i = 0; i < open; i++) {
+			if(openTimes[i] > since && openTimes[i] <= until && openTimes[i] > last) {
+				series.add(openTimes[i], Float.intBitsToFloat((int) openValues[i]));
+				last = openTimes[i];
+			}
+		}
+	}
+
+	public void restore(RateSeries series, long since, long until) {
+		long last = Long.MIN_VALUE;
+		long[] times = new long[Samples];
+		long[] totals = new long[Samples];
+		long[] words = new long[CompressedBlock.BufferWords];
+		CompressedBlock block = new CompressedBlock();
+		for(long s = oldestSequence(); s < nextSequence; s++) {
+			if(!load(block, s, words) || block.lastTime <= since)
+				continue;
+			int count = block.decodeCounter(times, totals);
+			//Skips readings from a clock that has since moved backwards
+			for(int i = 0; i < count; i++) {
+				if(times[i] > since && times[i] <= until && times[i] > last) {
+					series.add(times[i], totals[i]);
+					last = times[i];
+				}
+			}
+		}
+		for(int i = 0; i < open; i++) {
+			if(openTimes[i] > since && openTimes[i] <= until && openTimes[i] > last) {
+				series.add(openTimes[i], openValues[i]);
+				last = openTimes[i];
+			}
+		}
+	}
+
+	/**
+	 * Encodes the open samples into a block and stores it. Counters are kept
+	 * as they were read, a reset is just a larger delta.
+	 */
+	private void seal(boolean counter) {
+		CompressedBlock block = new CompressedBlock();
+		block.open(stream);
+		for(int i = 0; i < open; i++) {
+			if(counter)
+				block.appendCounter(openTimes[i], openValues[i]);
+			else
+				block.appendGauge(openTimes[i], Float.intBitsToFloat((int) openValues[i]));
+		}
+		block.seal();
+		int length = block.storedBytes();
+		int offset = writeOffset + length > dataBytes ? 0 : writeOffset;
+		//Drop the blocks about to be written over before their bytes change
+		for(int i = 0; i < blocks; i++) {
+			int entry = table + i * EntrySize;
+			int start = buffer.getInt(entry + 8);
+			if(buffer.getLong(entry) != 0 && start < offset + length && start + buffer.getInt(entry + 12) > offset)
+				buffer.putLong(entry, 0);
+		}
+		block.store(buffer, data + offset);
+		int entry = table + (int) (nextSequence % blocks) * EntrySize;
+		buffer.putLong(entry, 0);
+		buffer.putInt(entry + 8, offset);
+		buffer.putInt(entry + 12, length);
+		buffer.putLong(entry, nextSequence);
+		writeOffset = offset + length;
+		buffer.putLong(Ring, block.lastTime);
+		buffer.putLong(Ring + 8, ++nextSequence);
+		buffer.putLong(Ring + 16, writeOffset);
+		open = 0;
+	}
+
+	/**
+	 * @return the first of the newest run of stored blocks that are all still intact.
+	 */
+	private long oldestSequence() {
+		long s = nextSequence - 1;
+		while(s >= 1 && s > nextSequence - 1 - blocks && buffer.getLong(table + (int) (s % blocks) * EntrySize) == s)
+			s--;
+		return s + 1;
+	}
+
+	private boolean load(CompressedBlock block, long sequence, long[] words) {
+		int entry = table + (int) (sequence % blocks) * EntrySize;
+		int offset = buffer.getInt(entry + 8);
+		int length = buffer.getInt(entry + 12);
+		if(offset < 0 || length < CompressedBlock.StoredHeader || offset + length > dataBytes)
+			return false;
+		return block.load(buffer, data + offset, words);
+	}
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.metrics;
+
+import java.util.Arrays;
+
+/**
+ * A {@link TimeSeries} kept as a ring of {@link CompressedBlock}s, for
+ * retention long enough that twelve bytes a sample adds up. Samples stream
+ * into the open block, which also keeps a raw copy of them since that is
+ * where the short windows live.
+ * <p>
+ * Window sums are kept running as in {@link TimeSeries}, so averages are
+ * constant time reads. Samples leaving a window come from the raw copy, from
+ * the one decoded block the window starts in, or for a block that leaves
+ * whole from its header without decoding. Eviction drops whole blocks, the
+ * windows have already moved past every sample at or before the cutoff.
+ */
+public class CompressedTimeSeries implements GaugeSeries {
+
+	private static final int Samples = CompressedBlock.Samples;
+
+	private final CompressedBlock[] blocks;
+	private final int capacity;
+	private final long[] buffer = new long[CompressedBlock.BufferWords];
+	private final long[] openTimes = new long[Samples];
+	private final float[] openValues = new float[Samples];
+	private int head = 0;
+	private int count = 0;
+	private long first = 0;
+	private long floor = Long.MIN_VALUE;
+
+	private final long[] windows;
+	private final long[] windowBlocks;
+	private final int[] windowIndexes;
+	private final double[] windowSums;
+	private final int[] windowCounts;
+	private final long[] decodedBlocks;
+	private final long[][] decodedTimes;
+	private final float[][] decodedValues;
+
+	public CompressedTimeSeries(int capacity, long... windows) {
+		if(capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		this.capacity = capacity;
+		//One more for the open block and one for the block being evicted
+		this.blocks = new CompressedBlock[(capacity + Samples - 1) / Samples + 2];
+		for(int i = 0; i < blocks.length; i++) {
+			blocks[i] = new CompressedBlock();
+		}
+		this.windows = windows.clone();
+		this.windowBlocks = new long[windows.length];
+		this.windowIndexes = new int[windows.length];
+		this.windowSums = new double[windows.length];
+		this.windowCounts = new int[windows.length];
+		this.decodedBlocks = new long[windows.length];
+		this.decodedTimes = new long[windows.length][Samples];
+		this.decodedValues = new float[windows.length][Samples];
+		Arrays.fill(decodedBlocks, -1);
+	}
+
+	public void add(long time, float value) {
+		CompressedBlock open = count == 0 ? null : blocks[index(count-1)];
+		if(open == null || open.isFull()) {
+			if(open != null)
+				open.seal();
+			if(count == blocks.length)
+				evictOldest();
+			open = blocks[index(count)];
+			open.open(buffer);
+			count++;
+		}
+		openTimes[open.count] = time;
+		openValues[open.count] = value;
+		open.appendGauge(time, value);
+		for(int w = 0; w < windows.length; w++) {
+			windowSums[w] += value;
+			windowCounts[w]++;
+			advance(w, Math.max(time - windows[w], floor + 1));
+		}
+	}
+
+	public void evictOlderThan(long cutoff) {
+		if(cutoff <= floor)
+			return;
+		floor = cutoff;
+		if(count == 0)
+			return;
+		for(int w = 0; w < windows.length; w++) {
+			advance(w, floor + 1);
+		}
+		//The open block stays, a window may be waiting at its end
+		while(count > 1 && blocks[head].lastTime <= floor) {
+			dropOldest();
+		}
+	}
+
+	public double average(long window) {
+		int w = windowIndex(window);
+		if(windowCounts[w] == 0)
+			return 0;
+		return windowSums[w]/windowCounts[w];
+	}
+
+	public int count(long window) {
+		return windowCounts[windowIndex(window)];
+	}
+
+	public long[] getWindows() {
+		return windows.clone();
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return bytes held by the encoded blocks and their headers, the open block buffer and the decoded blocks.
+	 */
+	public long footprint() {
+		long bytes = (buffer.length + openTimes.length) * 8L + openValues.length * 4L + windows.length * Samples * 12L;
+		for(int b = 0; b < count; b++) {
+			bytes += blocks[index(b)].encodedBytes();
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return the samples held, including any past the last cutoff that are awaiting the rest of their block.
+	 */
+	public int size() {
+		int size = 0;
+		for(int b = 0; b < count; b++) {
+			size += blocks[index(b)].count;
+		}
+		return size;
+	}
+
+	public void clear() {
+		head = 0;
+		count = 0;
+		first = 0;
+		floor = Long.MIN_VALUE;
+		Arrays.fill(windowBlocks, 0);
+		Arrays.fill(windowIndexes, 0);
+		Arrays.fill(windowSums, 0);
+		Arrays.fill(windowCounts, 0);
+		Arrays.fill(decodedBlocks, -1);
+	}
+
+	/**
+	 * Moves the start of a window past every sample older than the bound.
+	 */
+	private void advance(int w, long bound) {
+		long open = first + count - 1;
+		while(true) {
+			long sequence = windowBlocks[w];
+			CompressedBlock block = block(sequence);
+			int i = windowIndexes[w];
+			if(i == block.count) {
+				if(sequence == open)
+					return;
+				windowBlocks[w]++;
+				windowIndexes[w] = 0;
+				continue;
+			}
+			if(sequence != open && i == 0 && block.lastTime < bound) {
+				//The whole block leaves, straight from its header
+				leave(w, block.sum, block.count);
+				windowBlocks[w]++;
+				continue;
+			}
+			long[] times = openTimes;
+			float[] values = openValues;
+			if(sequence != open) {
+				decode(w, sequence);
+				times = decodedTimes[w];
+				values = decodedValues[w];
+			}
+			while(i < block.count && times[i] < bound) {
+				leave(w, values[i], 1);
+				i++;
+			}
+			windowIndexes[w] = i;
+			if(i < block.count)
+				return;
+		}
+	}
+
+	private void leave(int w, double sum, int samples) {
+		windowSums[w] -= sum;
+		windowCounts[w] -= samples;
+		if(windowCounts[w] == 0)
+			windowSums[w] = 0;
+	}
+
+	private void decode(int w, long sequence) {
+		if(decodedBlocks[w] == sequence)
+			return;
+		block(sequence).decodeGauge(decodedTimes[w], decodedValues[w]);
+		decodedBlocks[w] = sequence;
+	}
+
+	private void evictOldest() {
+		CompressedBlock oldest = blocks[head];
+		if(oldest.lastTime > floor)
+			floor = oldest.lastTime;
+		for(int w = 0; w < windows.length; w++) {
+			advance(w, floor + 1);
+		}
+		dropOldest();
+	}
+
+	private void dropOldest() {
+		head = head + 1 == blocks.length ? 0 : head + 1;
+		count--;
+		first++;
+	}
+
+	private CompressedBlock block(long sequence) {
+		return blocks[index((int) (sequence - first))];
+	}
+
+	private int windowIndex(long window) {
+		for(int w = 0; w < windows.length; w++) {
+			if(windows[w] == window)
+				return w;
+		}
+		throw new IllegalArgumentException("Window not tracked: " + window);
+	}
+
+	private int index(int i) {
+		int idx = head + i;
+		return idx >= blocks.length ? idx - blocks.length : idx;
+	}
+
+}
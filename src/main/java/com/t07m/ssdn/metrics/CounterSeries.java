@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Fixed capacity ring of cumulative counter readings.
+ * <p>
+ * Readings are unwrapped into a monotonic total as they are added, so the
+ * rate over a window is a single subtraction between the newest reading and
+ * the newest reading at or before the start of the window.
+ */
+public class CounterSeries implements RateSeries {
+
+	private static final long MAX_32 = 0xFFFFFFFFL;
+
+	private final long[] times;
+	private final long[] totals;
+	private int head = 0;
+	private int size = 0;
+	private long first = 0;
+
+	private long lastCounter = 0;
+	private long total = 0;
+
+	private final long[] windows;
+	private final long[] windowStarts;
+
+	public CounterSeries(int capacity, long... windows) {
+		if(capacity < 2)
+			throw new IllegalArgumentException("Capacity must be at least 2: " + capacity);
+		this.times = new long[capacity];
+		this.totals = new long[capacity];
+		this.windows = windows.clone();
+		this.windowStarts = new long[windows.length];
+	}
+
+	public void add(long time, long counter) {
+		if(size > 0) {
+			total += delta(lastCounter, counter);
+		}
+		lastCounter = counter;
+		if(size == times.length) {
+			evictOldest();
+		}
+		int tail = index(size);
+		times[tail] = time;
+		totals[tail] = total;
+		size++;
+		for(int w = 0; w < windows.length; w++) {
+			long cutoff = time - windows[w];
+			while(windowStarts[w] + 1 < first + size && times[index((int) (windowStarts[w] + 1 - first))] <= cutoff) {
+				windowStarts[w]++;
+			}
+		}
+	}
+
+	static long delta(long previous, long current) {
+		long delta = current - previous;
+		if(delta >= 0)
+			return delta;
+		//32-bit counters wrap once they pass the top of their range
+		if(previous <= MAX_32 && current <= MAX_32 && previous > (MAX_32 >>> 1))
+			return current + (MAX_32 + 1) - previous;
+		//Otherwise the counter was reset and restarted from zero
+		return current;
+	}
+
+	public void evictOlderThan(long cutoff) {
+		//Always keep the newest reading so the next delta has a base
+		while(size > 1 && times[head] <= cutoff) {
+			evictOldest();
+		}
+	}
+
+	/**
+	 * @return the average rate over the window in counter units per second.
+	 */
+	public double average(long window) {
+		if(size < 2)
+			return 0;
+		int w = windowIndex(window);
+		int start = index((int) (windowStarts[w] - first));
+		int end = index(size-1);
+		long elapsed = times[end] - times[start];
+		if(elapsed <= 0)
+			return 0;
+		return (totals[end] - totals[start]) * 1000.0 / elapsed;
+	}
+
+	public long[] getWindows() {
+		return windows.clone();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return times.length;
+	}
+
+	public void clear() {
+		head = 0;
+		size = 0;
+		first = 0;
+		total = 0;
+		lastCounter = 0;
+		Arrays.fill(windowStarts, 0);
+	}
+
+	private void evictOldest() {
+		head = next(head);
+		size--;
+		first++;
+		for(int w = 0; w < windows.length; w++) {
+			if(windowStarts[w] < first)
+				windowStarts[w] = first;
+		}
+	}
+
+	private int windowIndex(long window) {
+		for(int w = 0; w < windows.length; w++) {
+			if(windows[w] == window)
+				return w;
+		}
+		throw new IllegalArgumentException("Window not tracked: " + window);
+	}
+
+	private int index(int i) {
+		int idx = head + i;
+		return idx >= times.length ? idx - times.length : idx;
+	}
+
+	private int next(int idx) {
+		return idx + 1 == times.length ? 0 : idx + 1;
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.metrics;
+
+/**
+ * A series of gauge readings averaged over each window.
+ */
+public interface GaugeSeries extends WindowedSeries {
+
+	/**
+	 * Samples a series of this capacity needs before it is kept compressed,
+	 * below it the raw ring is both small and faster to query.
+	 */
+	public static final int CompressAbove = 3600;
+
+	public void add(long time, float value);
+
+	public void evictOlderThan(long cutoff);
+
+	public int capacity();
+
+	public void clear();
+
+	/**
+	 * @return a {@link TimeSeries}, or a {@link CompressedTimeSeries} once the capacity passes {@link #CompressAbove}.
+	 */
+	public static GaugeSeries of(int capacity, long... windows) {
+		if(capacity > CompressAbove)
+			return new CompressedTimeSeries(capacity, windows);
+		return new TimeSeries(capacity, windows);
+	}
+
+}
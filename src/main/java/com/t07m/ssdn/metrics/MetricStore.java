@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.metrics;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A memory-mapped file of named regions that metric history is kept in, so
+ * it survives restarts and crashes. Writes to a region are plain memory
+ * stores into the page cache, the kernel writes them back on its own and
+ * {@link #close()} forces them out.
+ * <pre>
+ * header  int magic, int version, int regions, int reserved
+ * table   MaxRegions entries of 48 byte UTF-8 name, long offset, long length
+ * data    regions, each starting on a page boundary
+ * </pre>
+ * A region is reused when one of the same name and length exists, otherwise
+ * a zeroed one is appended, so changing the monitored interfaces or windows
+ * only starts the affected series over.
+ */
+public class MetricStore implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(MetricStore.class);
+
+	private static final int Magic = 0x5353444E;
+	private static final int Version = 1;
+	private static final int HeaderSize = 16;
+	private static final int MaxRegions = 4096;
+	private static final int NameSize = 48;
+	private static final int EntrySize = NameSize + 16;
+	private static final int Page = 4096;
+	private static final long DataStart = align(HeaderSize + (long) MaxRegions * EntrySize);
+
+	private final File file;
+	private final FileChannel channel;
+	private final MappedByteBuffer header;
+	private final ArrayList<String> names = new ArrayList<String>();
+	private long end;
+
+	private MetricStore(File file, FileChannel channel, MappedByteBuffer header) {
+		this.file = file;
+		this.channel = channel;
+		this.header = header;
+	}
+
+	public static MetricStore open(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			boolean fresh = channel.size() < DataStart;
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, DataStart);
+			if(!fresh && (header.getInt(0) != Magic || header.getInt(4) != Version)) {
+				logger.warn(file + " is not a metric history of this version, starting it over.");
+				fresh = true;
+			}
+			if(fresh) {
+				for(int i = 0; i < DataStart; i += 8)
+					header.putLong(i, 0);
+				channel.truncate(DataStart);
+				header.putInt(0, Magic);
+				header.putInt(4, Version);
+			}
+			MetricStore store = new MetricStore(file, channel, header);
+			store.load();
+			return store;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private void load() {
+		int count = Math.min(header.getInt(8), MaxRegions);
+		end = DataStart;
+		byte[] name = new byte[NameSize];
+		for(int i = 0; i < count; i++) {
+			int entry = HeaderSize + i * EntrySize;
+			for(int b = 0; b < NameSize; b++)
+				name[b] = header.get(entry + b);
+			int length = 0;
+			while(length < NameSize && name[length] != 0)
+				length++;
+			names.add(decode(name, length));
+			end = Math.max(end, align(header.getLong(entry + NameSize) + header.getLong(entry + NameSize + 8)));
+		}
+		logger.debug("Mapped " + file + " with " + count + " regions");
+	}
+
+	/**
+	 * @return the named region, holding what was written to it before a restart or zeroed if it is new.
+	 */
+	public synchronized ByteBuffer region(String name, int length) throws IOException {
+		byte[] encoded = encode(name);
+		name = decode(encoded, encoded.length);
+		int index = names.indexOf(name);
+		if(index >= 0) {
+			int entry = HeaderSize + index * EntrySize;
+			if(header.getLong(entry + NameSize + 8) == length)
+				return channel.map(FileChannel.MapMode.READ_WRITE, header.getLong(entry + NameSize), length);
+			//Same series with a new size, the old region is abandoned
+			for(int b = 0; b < NameSize; b++)
+				header.put(entry + b, (byte) 0);
+			names.set(index, "");
+		}
+		if(names.size() == MaxRegions)
+			throw new IOException("No room for another region in " + file);
+		long offset = end;
+		int entry = HeaderSize + names.size() * EntrySize;
+		ByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, offset, length);
+		for(int b = 0; b < NameSize; b++)
+			header.put(entry + b, b < encoded.length ? encoded[b] : 0);
+		header.putLong(entry + NameSize, offset);
+		header.putLong(entry + NameSize + 8, length);
+		names.add(name);
+		header.putInt(8, names.size());
+		end = align(offset + length);
+		return region;
+	}
+
+	public synchronized void close() {
+		try {
+			header.force();
+			channel.force(false);
+			channel.close();
+		} catch (IOException e) {
+			logger.warn("Unable to flush " + file + ": " + e.getMessage());
+		}
+	}
+
+	//Long names keep their start and a hash of the whole so they still fit the table
+	private static byte[] encode(String name) {
+		byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+		if(encoded.length <= NameSize)
+			return encoded;
+		byte[] hash = ("#" + Integer.toHexString(name.hashCode())).getBytes(StandardCharsets.UTF_8);
+		byte[] shortened = Arrays.copyOf(encoded, NameSize);
+		System.arraycopy(hash, 0, shortened, NameSize - hash.length, hash.length);
+		return shortened;
+	}
+
+	private static String decode(byte[] name, int length) {
+		return new String(name, 0, length, StandardCharsets.UTF_8);
+	}
+
+	private static long align(long offset) {
+		return (offset + Page - 1) / Page * Page;
+	}
+
+}
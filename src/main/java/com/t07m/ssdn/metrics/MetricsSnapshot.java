@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Every value a status update reports, captured together on one collector tick.
+ * Renderers read from the latest snapshot instead of querying each monitor, so
+ * all figures in an update describe the same moment and cost nothing to read.
+ */
+public class MetricsSnapshot {
+
+	private final @Getter long time;
+	private final WindowSnapshot cpu;
+	private final WindowSnapshot ram;
+	private final WindowSnapshot swap;
+	private final WindowSnapshot temp;
+	private final Map<String, WindowSnapshot> recv;
+	private final Map<String, WindowSnapshot> sent;
+	private final Map<String, Long> freeSpace;
+	private final @Getter long uptime;
+	private final @Getter String ip;
+	private final @Getter String city;
+	private final @Getter String region;
+	private final RollupSnapshot cpuHistory;
+	private final RollupSnapshot ramHistory;
+	private final RollupSnapshot swapHistory;
+	private final RollupSnapshot tempHistory;
+	private final Map<String, RollupSnapshot> recvHistory;
+	private final Map<String, RollupSnapshot> sentHistory;
+
+	public MetricsSnapshot(long time, WindowSnapshot cpu, WindowSnapshot ram, WindowSnapshot swap, WindowSnapshot temp,
+			Map<String, WindowSnapshot> recv, Map<String, WindowSnapshot> sent, Map<String, Long> freeSpace,
+			long uptime, String ip, String city, String region) {
+		this(time, cpu, ram, swap, temp, recv, sent, freeSpace, uptime, ip, city, region,
+				RollupSnapshot.Empty, RollupSnapshot.Empty, RollupSnapshot.Empty, RollupSnapshot.Empty,
+				Collections.emptyMap(), Collections.emptyMap());
+	}
+
+	public MetricsSnapshot(long time, WindowSnapshot cpu, WindowSnapshot ram, WindowSnapshot swap, WindowSnapshot temp,
+			Map<String, WindowSnapshot> recv, Map<String, WindowSnapshot> sent, Map<String, Long> freeSpace,
+			long uptime, String ip, String city, String region,
+			RollupSnapshot cpuHistory, RollupSnapshot ramHistory, RollupSnapshot swapHistory, RollupSnapshot tempHistory,
+			Map<String, RollupSnapshot> recvHistory, Map<String, RollupSnapshot> sentHistory) {
+		this.time = time;
+		this.cpu = cpu;
+		this.ram = ram;
+		this.swap = swap;
+		this.temp = temp;
+		this.recv = recv;
+		this.sent = sent;
+		this.freeSpace = Collections.unmodifiableMap(freeSpace);
+		this.uptime = uptime;
+		this.ip = ip;
+		this.city = city;
+		this.region = region;
+		this.cpuHistory = cpuHistory;
+		this.ramHistory = ramHistory;
+		this.swapHistory = swapHistory;
+		this.tempHistory = tempHistory;
+		this.recvHistory = recvHistory;
+		this.sentHistory = sentHistory;
+	}
+
+	public double getCpuUsage(long window, int decimals) {
+		return truncate(cpu.average(window)*100, decimals);
+	}
+
+	public double getRamUsage(long window, int decimals) {
+		return truncate(ram.average(window)*100, decimals);
+	}
+
+	public double getSwapUsage(long window, int decimals) {
+		return truncate(swap.average(window)*100, decimals);
+	}
+
+	public double getTemp(long window, int decimals) {
+		return truncate(temp.average(window), decimals);
+	}
+
+	//Return in Bits per second
+	public long getSent(String nif, long window) {
+		WindowSnapshot snapshot = sent.get(nif);
+		return snapshot == null ? 0 : (long) snapshot.average(window)*8;
+	}
+
+	public long getRecv(String nif, long window) {
+		WindowSnapshot snapshot = recv.get(nif);
+		return snapshot == null ? 0 : (long) snapshot.average(window)*8;
+	}
+
+	/**
+	 * @return the average over a {@link RollupSeries} horizon, as of the last complete minute.
+	 */
+	public double getCpuAverage(long horizon, int decimals) {
+		return truncate(cpuHistory.average(horizon)*100, decimals);
+	}
+
+	public double getCpuPeak(long horizon, int decimals) {
+		return truncate(cpuHistory.max(horizon)*100, decimals);
+	}
+
+	public double getRamAverage(long horizon, int decimals) {
+		return truncate(ramHistory.average(horizon)*100, decimals);
+	}
+
+	public double getRamPeak(long horizon, int decimals) {
+		return truncate(ramHistory.max(horizon)*100, decimals);
+	}
+
+	public double getSwapAverage(long horizon, int decimals) {
+		return truncate(swapHistory.average(horizon)*100, decimals);
+	}
+
+	public double getSwapPeak(long horizon, int decimals) {
+		return truncate(swapHistory.max(horizon)*100, decimals);
+	}
+
+	public double getTempAverage(long horizon, int decimals) {
+		return truncate(tempHistory.average(horizon), decimals);
+	}
+
+	public double getTempPeak(long horizon, int decimals) {
+		return truncate(tempHistory.max(horizon), decimals);
+	}
+
+	//Return in Bits per second
+	public long getSentAverage(String nif, long horizon) {
+		RollupSnapshot history = sentHistory.get(nif);
+		return history == null ? 0 : (long) (history.average(horizon)*8);
+	}
+
+	public long getSentPeak(String nif, long horizon) {
+		RollupSnapshot history = sentHistory.get(nif);
+		return history == null ? 0 : (long) (history.max(horizon)*8);
+	}
+
+	public long getRecvAverage(String nif, long horizon) {
+		RollupSnapshot history = recvHistory.get(nif);
+		return history == null ? 0 : (long) (history.average(horizon)*8);
+	}
+
+	public long getRecvPeak(String nif, long horizon) {
+		RollupSnapshot history = recvHistory.get(nif);
+		return history == null ? 0 : (long) (history.max(horizon)*8);
+	}
+
+	public long getFreeSpace(String mountPoint) {
+		return freeSpace.getOrDefault(mountPoint, -1L);
+	}
+
+	public Iterable<String> getInterfaces() {
+		return recv.keySet();
+	}
+
+	public Iterable<String> getMountPoints() {
+		return freeSpace.keySet();
+	}
+
+	private static double truncate(double value, int decimals) {
+		if(value == 0 || Double.isNaN(value))
+			return 0;
+		return ((int)(value*Math.pow(10, decimals)))/Math.pow(10, decimals);
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.metrics;
+
+/**
+ * A series of cumulative counter readings, averaged as a rate over each window.
+ */
+public interface RateSeries extends WindowedSeries {
+
+	public void add(long time, long counter);
+
+	public void evictOlderThan(long cutoff);
+
+	public int capacity();
+
+	public void clear();
+
+	/**
+	 * @return a {@link CounterSeries}, or a {@link CompressedCounterSeries} once the capacity passes {@link GaugeSeries#CompressAbove}.
+	 */
+	public static RateSeries of(int capacity, long... windows) {
+		if(capacity > GaugeSeries.CompressAbove)
+			return new CompressedCounterSeries(capacity, windows);
+		return new CounterSeries(capacity, windows);
+	}
+
+}
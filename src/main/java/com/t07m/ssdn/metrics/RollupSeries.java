@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Min, average and max of a metric beyond the raw windows: one minute
+ * buckets for 24 hours and fifteen minute buckets for 30 days. Both tiers
+ * are fixed rings of buckets in one buffer filled straight from the samples,
+ * so a series costs {@link #Footprint} bytes however long it runs and adding
+ * never allocates. Backed by a {@link MetricStore} region the buckets
+ * survive restarts as they are.
+ */
+public class RollupSeries {
+
+	private static final Logger logger = LoggerFactory.getLogger(RollupSeries.class);
+
+	public static final long Day = TimeUnit.DAYS.toMillis(1);
+	public static final long Week = TimeUnit.DAYS.toMillis(7);
+	public static final long Month = TimeUnit.DAYS.toMillis(30);
+	public static final long[] Horizons = {Day, Week, Month};
+
+	private static final long Minute = TimeUnit.MINUTES.toMillis(1);
+	private static final long Quarter = TimeUnit.MINUTES.toMillis(15);
+
+	//Start, sum, count, min and max of every bucket of both tiers
+	private static final int BucketSize = 8 + 8 + 4 + 4 + 4;
+	public static final int Footprint = (int) (Day / Minute + Month / Quarter) * BucketSize;
+
+	private final Tier minutes;
+	private final Tier quarters;
+
+	public RollupSeries() {
+		this(ByteBuffer.allocate(Footprint));
+	}
+
+	public RollupSeries(ByteBuffer buffer) {
+		this.minutes = new Tier(buffer, 0, Minute, (int) (Day / Minute));
+		this.quarters = new Tier(buffer, (int) (Day / Minute) * BucketSize, Quarter, (int) (Month / Quarter));
+	}
+
+	/**
+	 * @return the series kept in the named region of the store, or in memory if there is no store.
+	 */
+	public static RollupSeries open(MetricStore store, String name) {
+		if(store != null) {
+			try {
+				return new RollupSeries(store.region(name, Footprint));
+			} catch (IOException e) {
+				logger.warn("Unable to persist " + name + ": " + e.getMessage());
+			}
+		}
+		return new RollupSeries();
+	}
+
+	/**
+	 * @return true if the sample opened a new minute, the point at which the
+	 * previous one is complete and worth summarizing again.
+	 */
+	public boolean add(long time, float value) {
+		if(Float.isNaN(value))
+			return false;
+		quarters.add(time, value);
+		return minutes.add(time, value);
+	}
+
+	/**
+	 * Summarizes every horizon up to the end of the last complete minute.
+	 * Spans up to a day come from the minute tier, longer ones from the quarter tier.
+	 */
+	public RollupSnapshot summarize(long now) {
+		long end = now - now % Minute;
+		float[] min = new float[Horizons.length];
+		float[] max = new float[Horizons.length];
+		float[] avg = new float[Horizons.length];
+		for(int h = 0; h < Horizons.length; h++) {
+			Tier tier = Horizons[h] <= Day ? minutes : quarters;
+			tier.summarize(end - Horizons[h], end, h, min, avg, max);
+		}
+		return new RollupSnapshot(Horizons, min, avg, max);
+	}
+
+	public void clear() {
+		minutes.clear();
+		quarters.clear();
+	}
+
+	private static class Tier {
+
+		private final ByteBuffer buffer;
+		private final int base;
+		private final long resolution;
+		private final int capacity;
+		private long current = -1;
+
+		private Tier(ByteBuffer buffer, int base, long resolution, int capacity) {
+			this.buffer = buffer;
+			this.base = base;
+			this.resolution = resolution;
+			this.capacity = capacity;
+		}
+
+		private int bucket(long start) {
+			return base + (int) ((start / resolution) % capacity) * BucketSize;
+		}
+
+		private boolean add(long time, float value) {
+			long start = time - time % resolution;
+			int bucket = bucket(start);
+			int count = buffer.getInt(bucket + 16);
+			if(buffer.getLong(bucket) != start || count == 0) {
+				buffer.putLong(bucket, start);
+				buffer.putDouble(bucket + 8, value);
+				buffer.putFloat(bucket + 20, value);
+				buffer.putFloat(bucket + 24, value);
+				buffer.putInt(bucket + 16, 1);
+			}else {
+				buffer.putDouble(bucket + 8, buffer.getDouble(bucket + 8) + value);
+				if(value < buffer.getFloat(bucket + 20))
+					buffer.putFloat(bucket + 20, value);
+				if(value > buffer.getFloat(bucket + 24))
+					buffer.putFloat(bucket + 24, value);
+				buffer.putInt(bucket + 16, count + 1);
+			}
+			boolean opened = start != current;
+			current = start;
+			return opened;
+		}
+
+		//Buckets are only counted if they still hold the period asked for, older ones have been overwritten
+		private void summarize(long from, long to, int h, float[] min, float[] avg, float[] max) {
+			long first = Math.max(from, to - capacity * resolution);
+			first -= first % resolution;
+			double sum = 0;
+			long count = 0;
+			float low = Float.NaN, high = Float.NaN;
+			for(long start = first; start < to; start += resolution) {
+				int bucket = bucket(start);
+				int n = buffer.getInt(bucket + 16);
+				if(buffer.getLong(bucket) != start || n == 0)
+					continue;
+				sum += buffer.getDouble(bucket + 8);
+				count += n;
+				float bucketMin = buffer.getFloat(bucket + 20);
+				float bucketMax = buffer.getFloat(bucket + 24);
+				if(!(bucketMin >= low))
+					low = bucketMin;
+				if(!(bucketMax <= high))
+					high = bucketMax;
+			}
+			min[h] = count > 0 ? low : 0;
+			max[h] = count > 0 ? high : 0;
+			avg[h] = count > 0 ? (float) (sum / count) : 0;
+		}
+
+		private void clear() {
+			for(int i = 0; i < capacity; i++)
+				buffer.putInt(base + i * BucketSize + 16, 0);
+			current = -1;
+		}
+	}
+
+}
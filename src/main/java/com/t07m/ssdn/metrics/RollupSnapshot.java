@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.metrics;
+
+/**
+ * Immutable min, average and max of a {@link RollupSeries} for each of its
+ * horizons, published once a minute so readers never need the monitor lock.
+ */
+public class RollupSnapshot {
+
+	public static final RollupSnapshot Empty = new RollupSnapshot(RollupSeries.Horizons,
+			new float[RollupSeries.Horizons.length], new float[RollupSeries.Horizons.length], new float[RollupSeries.Horizons.length]);
+
+	private final long[] horizons;
+	private final float[] min;
+	private final float[] avg;
+	private final float[] max;
+
+	RollupSnapshot(long[] horizons, float[] min, float[] avg, float[] max) {
+		this.horizons = horizons;
+		this.min = min;
+		this.avg = avg;
+		this.max = max;
+	}
+
+	private int index(long horizon) {
+		for(int h = 0; h < horizons.length; h++) {
+			if(horizons[h] == horizon)
+				return h;
+		}
+		throw new IllegalArgumentException("Horizon not tracked: " + horizon);
+	}
+
+	public double min(long horizon) {
+		return min[index(horizon)];
+	}
+
+	public double average(long horizon) {
+		return avg[index(horizon)];
+	}
+
+	public double max(long horizon) {
+		return max[index(horizon)];
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The raw samples of one series as a ring of (time, value) records in a
+ * {@link MetricStore} region, replayed into the in-memory series on startup.
+ * A record is written before the sequence that publishes it, so a crash
+ * between the two only loses that sample.
+ * <pre>
+ * long sequence, then capacity records of long time, long value
+ * </pre>
+ * Journals of series long enough to be kept compressed are a
+ * {@link CompressedSeriesJournal} instead.
+ */
+public class SeriesJournal {
+
+	private static final Logger logger = LoggerFactory.getLogger(SeriesJournal.class);
+
+	private static final int HeaderSize = 8;
+	private static final int RecordSize = 16;
+
+	private final ByteBuffer buffer;
+	private final int capacity;
+	private long sequence;
+
+	SeriesJournal(ByteBuffer buffer, int capacity) {
+		this.buffer = buffer;
+		this.capacity = capacity;
+		this.sequence = buffer.getLong(0);
+	}
+
+	/**
+	 * @return the journal, compressed once the capacity passes {@link GaugeSeries#CompressAbove},
+	 * or null if there is no store or the region could not be mapped.
+	 */
+	public static SeriesJournal open(MetricStore store, String name, int capacity) {
+		if(store == null)
+			return null;
+		try {
+			if(capacity > GaugeSeries.CompressAbove)
+				return new CompressedSeriesJournal(store.region(name, CompressedSeriesJournal.regionSize(capacity)), capacity);
+			return new SeriesJournal(store.region(name, regionSize(capacity)), capacity);
+		} catch (IOException e) {
+			logger.warn("Unable to persist " + name + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	static int regionSize(int capacity) {
+		return HeaderSize + capacity * RecordSize;
+	}
+
+	public void append(long time, float value) {
+		write(time, Float.floatToRawIntBits(value));
+	}
+
+	public void append(long time, long value) {
+		write(time, value);
+	}
+
+	final void write(long time, long value) {
+		int record = HeaderSize + (int) (sequence % capacity) * RecordSize;
+		buffer.putLong(record, time);
+		buffer.putLong(record + 8, value);
+		buffer.putLong(0, ++sequence);
+	}
+
+	/**
+	 * Adds the surviving samples within (since, until] back into a series, oldest first.
+	 */
+	public void restore(GaugeSeries series, long since, long until) {
+		long last = Long.MIN_VALUE;
+		for(long s = Math.max(0, sequence - capacity); s < sequence; s++) {
+			int record = HeaderSize + (int) (s % capacity) * RecordSize;
+			long time = buffer.getLong(record);
+			if(time > since && time <= until && time > last) {
+				series.add(time, Float.intBitsToFloat((int) buffer.getLong(record + 8)));
+				last = time;
+			}
+		}
+	}
+
+	/**
+	 * Adds the surviving readings within (since, until] back into a series, oldest first.
+	 */
+	public void restore(RateSeries series, long since, long until) {
+		long last = Long.MIN_VALUE;
+		for(long s = Math.max(0, sequence - capacity); s < sequence; s++) {
+			int record = HeaderSize + (int) (s % capacity) * RecordSize;
+			long time = buffer.getLong(record);
+			//Skips records from a clock that has since moved backwards
+			if(time > since && time <= until && time > last) {
+				series.add(time, buffer.getLong(record + 8));
+				last = time;
+			}
+		}
+	}
+
+	/**
+	 * @return the time and value of every surviving record after the given time, oldest first.
+	 */
+	final int records(long after, long[] times, long[] values) {
+		int n = 0;
+		long last = after;
+		for(long s = Math.max(0, sequence - capacity); s < sequence; s++) {
+			int record = HeaderSize + (int) (s % capacity) * RecordSize;
+			long time = buffer.getLong(record);
+			if(time > last) {
+				times[n] = time;
+				values[n++] = buffer.getLong(record + 8);
+				last = time;
+			}
+		}
+		return n;
+	}
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Fixed capacity ring of (timestamp, value) samples, oldest first.
+ * Backed by parallel primitive arrays so adding and evicting never allocate.
+ * <p>
+ * A running sum and count is kept for each configured window, updated as
+ * samples enter and leave it, so window averages are constant time reads.
+ * Windows are measured back from the newest sample.
+ */
+public class TimeSeries implements GaugeSeries {
+
+	private final long[] times;
+	private final float[] values;
+	private int head = 0;
+	private int size = 0;
+	private long first = 0;
+
+	private final long[] windows;
+	private final long[] windowStarts;
+	private final double[] windowSums;
+	private final int[] windowCounts;
+
+	public TimeSeries(int capacity, long... windows) {
+		if(capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		this.times = new long[capacity];
+		this.values = new float[capacity];
+		this.windows = windows.clone();
+		this.windowStarts = new long[windows.length];
+		this.windowSums = new double[windows.length];
+		this.windowCounts = new int[windows.length];
+	}
+
+	public static int capacityFor(long maxAge, long interval) {
+		//Leave headroom for ticks that fire slightly early
+		long samples = maxAge / Math.max(interval, 1);
+		return (int) Math.min(Integer.MAX_VALUE - 8, samples + samples / 10 + 1);
+	}
+
+	public static long[] windowsOf(long... windows) {
+		long[] sorted = Arrays.stream(windows).filter(w -> w > 0).sorted().distinct().toArray();
+		if(sorted.length == 0)
+			throw new IllegalArgumentException("At least one positive window is required");
+		return sorted;
+	}
+
+	public void add(long time, float value) {
+		if(size == times.length) {
+			evictOldest();
+		}
+		int tail = index(size);
+		times[tail] = time;
+		values[tail] = value;
+		size++;
+		for(int w = 0; w < windows.length; w++) {
+			windowSums[w] += value;
+			windowCounts[w]++;
+			long cutoff = time - windows[w];
+			while(times[index((int) (windowStarts[w] - first))] < cutoff) {
+				leaveWindow(w);
+			}
+		}
+	}
+
+	public void evictOlderThan(long cutoff) {
+		while(size > 0 && times[head] <= cutoff) {
+			evictOldest();
+		}
+	}
+
+	public double average(long window) {
+		int w = windowIndex(window);
+		if(windowCounts[w] == 0)
+			return 0;
+		return windowSums[w]/windowCounts[w];
+	}
+
+	public int count(long window) {
+		return windowCounts[windowIndex(window)];
+	}
+
+	public long[] getWindows() {
+		return windows.clone();
+	}
+
+	public long getMaxWindow() {
+		return windows.length == 0 ? 0 : windows[windows.length-1];
+	}
+
+	public long getTime(int i) {
+		return times[index(i)];
+	}
+
+	public float getValue(int i) {
+		return values[index(i)];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return times.length;
+	}
+
+	public void clear() {
+		head = 0;
+		size = 0;
+		first = 0;
+		Arrays.fill(windowStarts, 0);
+		Arrays.fill(windowSums, 0);
+		Arrays.fill(windowCounts, 0);
+	}
+
+	private void evictOldest() {
+		for(int w = 0; w < windows.length; w++) {
+			if(windowStarts[w] == first)
+				leaveWindow(w);
+		}
+		head = next(head);
+		size--;
+		first++;
+	}
+
+	private void leaveWindow(int w) {
+		windowSums[w] -= values[index((int) (windowStarts[w] - first))];
+		windowStarts[w]++;
+		if(--windowCounts[w] == 0)
+			windowSums[w] = 0;
+	}
+
+	private int windowIndex(long window) {
+		for(int w = 0; w < windows.length; w++) {
+			if(windows[w] == window)
+				return w;
+		}
+		throw new IllegalArgumentException("Window not tracked: " + window);
+	}
+
+	private int index(int i) {
+		int idx = head + i;
+		return idx >= times.length ? idx - times.length : idx;
+	}
+
+	private int next(int idx) {
+		return idx + 1 == times.length ? 0 : idx + 1;
+	}
+}
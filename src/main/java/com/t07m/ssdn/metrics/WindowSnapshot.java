@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.metrics;
+
+import lombok.Getter;
+
+/**
+ * Immutable copy of the window averages of a {@link WindowedSeries}, published by
+ * the sampling thread so readers never need to take the monitor lock.
+ */
+public class WindowSnapshot {
+
+	private final long[] windows;
+	private final double[] averages;
+	private final @Getter long time;
+
+	private WindowSnapshot(long[] windows, double[] averages, long time) {
+		this.windows = windows;
+		this.averages = averages;
+		this.time = time;
+	}
+
+	public static WindowSnapshot empty(long[] windows) {
+		return new WindowSnapshot(windows.clone(), new double[windows.length], 0);
+	}
+
+	public static WindowSnapshot of(WindowedSeries series, long time) {
+		long[] windows = series.getWindows();
+		double[] averages = new double[windows.length];
+		for(int w = 0; w < windows.length; w++) {
+			averages[w] = series.average(windows[w]);
+		}
+		return new WindowSnapshot(windows, averages, time);
+	}
+
+	public double average(long window) {
+		for(int w = 0; w < windows.length; w++) {
+			if(windows[w] == window)
+				return averages[w];
+		}
+		throw new IllegalArgumentException("Window not tracked: " + window);
+	}
+
+	public long[] getWindows() {
+		return windows.clone();
+	}
+}
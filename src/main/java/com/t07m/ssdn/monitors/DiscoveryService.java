@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.monitors;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.t07m.application.Service;
+import com.t07m.ssdn.ServerStatusDiscordNode;
+import com.t07m.ssdn.handlers.NetworkHandler;
+import com.t07m.ssdn.handlers.StorageHandler;
+
+public class DiscoveryService extends Service<ServerStatusDiscordNode>{
+
+	private static final Logger logger = LoggerFactory.getLogger(DiscoveryService.class);
+
+	public DiscoveryService() {
+		super(TimeUnit.MINUTES.toMillis(1));
+	}
+
+	private final long StorageRefreshInterval = TimeUnit.MINUTES.toMillis(5);
+
+	private long lastStorageRefresh = 0;
+
+	public void init() {
+		logger.debug("Initializing DiscoveryService");
+	}
+
+	public void process() {
+		//Picks up interfaces that were hot-plugged or renamed since the last pass
+		NetworkHandler.refresh();
+		//Enumerating every mount is costly on hosts with many bind and overlay mounts
+		if(lastStorageRefresh < System.currentTimeMillis() - StorageRefreshInterval) {
+			StorageHandler.refresh();
+			lastStorageRefresh = System.currentTimeMillis();
+		}
+	}
+
+}
@@ -56,9 +56,9 @@ public class JDAStatusMonitor extends Service<ServerStatusDiscordNode>{
 			if(firstConnected && status == Status.CONNECTED) {
 				firstConnected = false;
 				logger.info("Bot Ready");
-				if(app.getConfig().getMessageID() == -1L) {
-					logger.info("Enter the command \"" 
-							+ app.getConfig().getInitCommand().replace("<ServerName>", app.getConfig().getServerName()) 
+				if(app.getConfig().getStatusMessages().isEmpty()) {
+					logger.info("Run the slash command \"/" 
+							+ app.getConfig().getInitCommandName() 
 							+ "\" to begin monitoring");
 				}
 			}
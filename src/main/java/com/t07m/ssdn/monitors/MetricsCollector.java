@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.monitors;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.t07m.application.Service;
+import com.t07m.ssdn.ServerStatusDiscordNode;
+import com.t07m.ssdn.metrics.MetricStore;
+import com.t07m.ssdn.metrics.MetricsSnapshot;
+import com.t07m.ssdn.providers.HardwareSample;
+import com.t07m.ssdn.providers.OSHIProvider;
+
+import lombok.Getter;
+
+/**
+ * Runs every registered {@link Monitor} from one aligned tick on one thread.
+ * Monitors due on the same tick share a single {@link HardwareSample}, so
+ * each hardware source is read once and all metrics carry the same timestamp.
+ * After each tick the results are published as one {@link MetricsSnapshot}.
+ * History is kept in a {@link MetricStore} when the config names a file for
+ * it, so averages pick up where they left off after a restart.
+ */
+public class MetricsCollector extends Service<ServerStatusDiscordNode>{
+
+	private static final Logger logger = LoggerFactory.getLogger(MetricsCollector.class);
+
+	public static final long TickInterval = TimeUnit.SECONDS.toMillis(1);
+
+	private final ServerStatusDiscordNode app;
+	private final ArrayList<Monitor> monitors = new ArrayList<Monitor>();
+	private final HardwareSample sample = new HardwareSample();
+	private long ticks = 0;
+	private MetricStore store;
+	private volatile @Getter MetricsSnapshot snapshot;
+
+	public MetricsCollector(ServerStatusDiscordNode app) {
+		super(TickInterval);
+		this.app = app;
+	}
+
+	public void register(Monitor... monitors) {
+		for(Monitor monitor : monitors) {
+			if(monitor.getInterval() % TickInterval != 0)
+				throw new IllegalArgumentException("Monitor interval must be a multiple of " + TickInterval + "ms: " + monitor.getClass().getSimpleName());
+			this.monitors.add(monitor);
+		}
+	}
+
+	public void init() {
+		logger.debug("Initializing MetricsCollector");
+		File file = app.getConfig().resolveHistoryFile();
+		if(file != null) {
+			try {
+				store = MetricStore.open(file);
+			} catch (IOException e) {
+				logger.warn("Unable to open " + file + ", history will not survive a restart: " + e.getMessage());
+			}
+		}
+		for(Monitor monitor : monitors) {
+			monitor.init(store);
+		}
+	}
+
+	public void process() {
+		tick(System.currentTimeMillis());
+	}
+
+	public void tick(long now) {
+		sample.reset(now);
+		for(int i = 0; i < monitors.size(); i++) {
+			Monitor monitor = monitors.get(i);
+			if(ticks % (monitor.getInterval() / TickInterval) == 0) {
+				try {
+					monitor.sample(sample);
+				} catch (RuntimeException e) {
+					logger.error("Failed to sample " + monitor.getClass().getSimpleName() + ": " + e.getMessage());
+				}
+			}
+		}
+		ticks++;
+		snapshot = capture(now);
+	}
+
+	private MetricsSnapshot capture(long now) {
+		LocationMonitor location = app.getLocationMonitor();
+		return new MetricsSnapshot(now,
+				app.getCpuMonitor().getSnapshot(),
+				app.getRamMonitor().getSnapshot(),
+				app.getSwapMonitor().getSnapshot(),
+				app.getTempMonitor().getSnapshot(),
+				app.getNetworkMonitor().getRecvSnapshots(),
+				app.getNetworkMonitor().getSentSnapshots(),
+				app.getStorageMonitor().getFreeSpace(),
+				OSHIProvider.getSystemUptime()*1000,
+				location.getIp(), location.getCity(), location.getRegion(),
+				app.getCpuMonitor().getRollups(),
+				app.getRamMonitor().getRollups(),
+				app.getSwapMonitor().getRollups(),
+				app.getTempMonitor().getRollups(),
+				app.getNetworkMonitor().getRecvRollups(),
+				app.getNetworkMonitor().getSentRollups());
+	}
+
+	public void cleanup() {
+		for(Monitor monitor : monitors) {
+			monitor.cleanup();
+		}
+		if(store != null) {
+			store.close();
+			store = null;
+		}
+	}
+
+}
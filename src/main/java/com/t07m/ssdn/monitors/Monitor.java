@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.monitors;
+
+import com.t07m.ssdn.metrics.MetricStore;
+import com.t07m.ssdn.providers.HardwareSample;
+
+import lombok.Getter;
+
+/**
+ * A metric store fed by the {@link MetricsCollector}. Monitors no longer run
+ * their own service thread, they are sampled on the collector tick that
+ * matches their interval.
+ */
+public abstract class Monitor {
+
+	private final @Getter long interval;
+
+	public Monitor(long interval) {
+		this.interval = interval;
+	}
+
+	/**
+	 * @param store where history is kept across restarts, or null to keep it in memory only.
+	 */
+	public void init(MetricStore store) {}
+
+	public abstract void sample(HardwareSample sample);
+
+	public void cleanup() {}
+
+}
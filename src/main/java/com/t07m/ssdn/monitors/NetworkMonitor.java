@@ -15,247 +15,228 @@
  */
 package com.t07m.ssdn.monitors;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.t07m.application.Service;
 import com.t07m.ssdn.FormatUtils;
-import com.t07m.ssdn.ServerStatusDiscordNode;
-import com.t07m.ssdn.providers.OSHIProvider;
+import com.t07m.ssdn.handlers.NetworkHandler;
+import com.t07m.ssdn.metrics.MetricStore;
+import com.t07m.ssdn.metrics.RateSeries;
+import com.t07m.ssdn.metrics.RollupSeries;
+import com.t07m.ssdn.metrics.RollupSnapshot;
+import com.t07m.ssdn.metrics.SeriesJournal;
+import com.t07m.ssdn.metrics.TimeSeries;
+import com.t07m.ssdn.metrics.WindowSnapshot;
+import com.t07m.ssdn.providers.HardwareSample;
+
+import lombok.Getter;
 
 import oshi.hardware.NetworkIF;
 
-public class NetworkMonitor extends Service<ServerStatusDiscordNode>{
+public class NetworkMonitor extends Monitor{
 
 	private static final Logger logger = LoggerFactory.getLogger(NetworkMonitor.class);
 
-	private final long MaxUsageAge = TimeUnit.MINUTES.toMillis(15);
+	private static final long SampleInterval = TimeUnit.SECONDS.toMillis(3);
+
+	private final String[] monitored;
+	private final long[] windows;
+	private final long MaxUsageAge;
 
 	private Object usageLock = new Object();
 
-	private HashMap<String, LinkedHashMap<Long, Long>> bytesRecv;
-	private HashMap<String, LinkedHashMap<Long, Long>> bytesSent;
-	private HashMap<String, Long> lastRecvs;
-	private HashMap<String, Long> lastSents;
-	private HashMap<String, Long> lastRecvsTime;
-	private HashMap<String, Long> lastSentsTime;
+	private ArrayList<InterfaceState> interfaces = new ArrayList<InterfaceState>();
+	private byte[][] names = new byte[0][];
+	private long[] recvCounters = new long[0];
+	private long[] sentCounters = new long[0];
+	private volatile @Getter Map<String, WindowSnapshot> recvSnapshots = Collections.emptyMap();
+	private volatile @Getter Map<String, WindowSnapshot> sentSnapshots = Collections.emptyMap();
+	private volatile @Getter Map<String, RollupSnapshot> recvRollups = Collections.emptyMap();
+	private volatile @Getter Map<String, RollupSnapshot> sentRollups = Collections.emptyMap();
+	private boolean rolledOver = false;
 
-	public NetworkMonitor() {
-		super(TimeUnit.SECONDS.toMillis(3));
+	public NetworkMonitor(String[] monitored, long... windows) {
+		super(SampleInterval);
+		this.monitored = monitored.clone();
+		this.windows = TimeSeries.windowsOf(windows);
+		this.MaxUsageAge = this.windows[this.windows.length-1];
 	}
 
-	public void init() {
+	public void init(MetricStore store) {
 		logger.debug("Initializing NetworkMonitor");
-		bytesRecv = new HashMap<String, LinkedHashMap<Long, Long>>();
-		bytesSent = new HashMap<String, LinkedHashMap<Long, Long>>();
-		lastRecvs = new HashMap<String, Long>();
-		lastSents = new HashMap<String, Long>();
-		lastRecvsTime = new HashMap<String, Long>();
-		lastSentsTime = new HashMap<String, Long>();
-	}
-
-	public void process() {
 		synchronized(usageLock) {
-			for(NetworkIF nif : OSHIProvider.getHardware().getNetworkIFs(false)) {
-				boolean newNif = false;
-				LinkedHashMap<Long, Long> usagesRecv = bytesRecv.get(nif.getName());
-				if(usagesRecv == null) {
-					usagesRecv = new LinkedHashMap<Long, Long>();
-					bytesRecv.put(nif.getName(), usagesRecv);
-					newNif = true;
-				}
-				LinkedHashMap<Long, Long> usagesSent = bytesSent.get(nif.getName());
-				if(usagesSent == null) {
-					usagesSent = new LinkedHashMap<Long, Long>();
-					bytesSent.put(nif.getName(), usagesSent);
-					newNif = true;
+			long now = System.currentTimeMillis();
+			interfaces = new ArrayList<InterfaceState>();
+			for(String name : new LinkedHashSet<String>(Arrays.asList(monitored))) {
+				InterfaceState state = new InterfaceState(name, newCounterSeries(), newCounterSeries(), store);
+				//Pick up where the last run left off
+				if(state.recvJournal != null && state.sentJournal != null) {
+					state.recvJournal.restore(state.bytesRecv, now-MaxUsageAge-SampleInterval, now);
+					state.sentJournal.restore(state.bytesSent, now-MaxUsageAge-SampleInterval, now);
 				}
-				if(newNif) {
-					nif.updateAttributes();
-					lastRecvs.put(nif.getName(), nif.getBytesRecv());
-					lastRecvsTime.put(nif.getName(), System.currentTimeMillis());
-					lastSents.put(nif.getName(), nif.getBytesSent());
-					lastSentsTime.put(nif.getName(), System.currentTimeMillis());
-					continue;
-				}
-				nif.updateAttributes();
-				long newRecvs = nif.getBytesRecv();
-				long newRecvsTime = System.currentTimeMillis();
-				long newSents = nif.getBytesSent();
-				long newSentsTime = System.currentTimeMillis();
-				usagesRecv.put(System.currentTimeMillis(), (long) ((newRecvs - lastRecvs.get(nif.getName())) / ((newRecvsTime - lastRecvsTime.get(nif.getName()))/1000.0)));
-				usagesSent.put(System.currentTimeMillis(), (long) ((newSents - lastSents.get(nif.getName())) / ((newSentsTime - lastSentsTime.get(nif.getName()))/1000.0)));
-				lastRecvs.put(nif.getName(), newRecvs);
-				lastRecvsTime.put(nif.getName(), newRecvsTime);
-				lastSents.put(nif.getName(), newSents);
-				lastSentsTime.put(nif.getName(), newSentsTime);
-				for(Long l : usagesRecv.keySet().toArray(new Long[0])) {
-					if(l > System.currentTimeMillis()-MaxUsageAge) {
-						break;
-					}
-					usagesRecv.remove(l);
-				}
-				for(Long l : usagesSent.keySet().toArray(new Long[0])) {
-					if(l > System.currentTimeMillis()-MaxUsageAge) {
-						break;
-					}
-					usagesSent.remove(l);
-				}
-			}		
+				interfaces.add(state);
+			}
+			names = new byte[interfaces.size()][];
+			for(int i = 0; i < names.length; i++) {
+				names[i] = interfaces.get(i).name.getBytes(StandardCharsets.US_ASCII);
+			}
+			recvCounters = new long[names.length];
+			sentCounters = new long[names.length];
+			if(store != null) {
+				publishSnapshots(now);
+				publishRollups(now);
+			}
 		}
 	}
 
-	public long getSent1M(String nif) {
-		int samples = 0;
-		long total = 0;
+	public void sample(HardwareSample sample) {
+		long now = sample.getTime();
 		synchronized(usageLock) {
-			LinkedHashMap<Long, Long> usages = bytesSent.get(nif);
-			if(usages != null) {
-				Long[] keys = usages.keySet().toArray(new Long[0]);
-				for(int i = keys.length-1; i > 0; i--) {
-					Long l = keys[i];
-					long cutoff = System.currentTimeMillis()-TimeUnit.MINUTES.toMillis(1);
-					if(l < cutoff) {
-						break;
-					}
-					samples++;
-					total += usages.get(l);
+			if(sample.readNetworkCounters(names, recvCounters, sentCounters)) {
+				for(int i = 0; i < interfaces.size(); i++) {
+					InterfaceState state = interfaces.get(i);
+					if(recvCounters[i] >= 0 && sentCounters[i] >= 0)
+						record(state, now, recvCounters[i], sentCounters[i], now);
+					else
+						miss(state, now);
+				}
+			}else {
+				for(int i = 0; i < interfaces.size(); i++) {
+					InterfaceState state = interfaces.get(i);
+					//Handles are cached and rediscovered by DiscoveryService
+					NetworkIF nif = NetworkHandler.getInterface(state.name);
+					if(nif == null)
+						state.clear();
+					else if(nif.updateAttributes())
+						record(state, nif.getTimeStamp(), nif.getBytesRecv(), nif.getBytesSent(), now);
+					else
+						miss(state, now);
 				}
 			}
+			publishSnapshots(now);
+			if(rolledOver) {
+				publishRollups(now);
+				rolledOver = false;
+			}
 		}
-		if(samples == 0)
-			return 0;
-		//Return in Bits per second
-		return total/samples*8;
 	}
 
-	public long getRecv1M(String nif) {
-		int samples = 0;
-		long total = 0;
-		synchronized(usageLock) {
-			LinkedHashMap<Long, Long> usages = bytesRecv.get(nif);
-			if(usages != null) {
-				Long[] keys = usages.keySet().toArray(new Long[0]);
-				for(int i = keys.length-1; i > 0; i--) {
-					Long l = keys[i];
-					long cutoff = System.currentTimeMillis()-TimeUnit.MINUTES.toMillis(1);
-					if(l < cutoff) {
-						break;
-					}
-					samples++;
-					total += usages.get(l);
-				}
-			}
+	private void record(InterfaceState state, long time, long recv, long sent, long now) {
+		if(state.lastTime > 0 && time > state.lastTime && recv >= state.lastRecv && sent >= state.lastSent) {
+			float seconds = (time - state.lastTime) / 1000f;
+			rolledOver |= state.recvHistory.add(now, (recv - state.lastRecv) / seconds);
+			rolledOver |= state.sentHistory.add(now, (sent - state.lastSent) / seconds);
 		}
-		if(samples == 0)
-			return 0;
-		//Return in Bits per second
-		return total/samples*8;
+		state.lastTime = time;
+		state.lastRecv = recv;
+		state.lastSent = sent;
+		state.bytesRecv.add(time, recv);
+		state.bytesSent.add(time, sent);
+		if(state.recvJournal != null && state.sentJournal != null) {
+			state.recvJournal.append(time, recv);
+			state.sentJournal.append(time, sent);
+		}
+		//Keep one reading from before the largest window as its base
+		state.bytesRecv.evictOlderThan(now-MaxUsageAge-SampleInterval);
+		state.bytesSent.evictOlderThan(now-MaxUsageAge-SampleInterval);
 	}
 
-	public long getSent5M(String nif) {
+	/**
+	 * Skips an interface that could not be read this tick. Its readings are
+	 * kept so the next one continues the windows, and are only let go once
+	 * the newest of them has aged out of every window.
+	 */
+	private void miss(InterfaceState state, long now) {
+		if(state.lastTime > 0 && state.lastTime < now-MaxUsageAge-SampleInterval)
+			state.clear();
+	}
 
-		int samples = 0;long total = 0;
-		synchronized(usageLock) {
-			LinkedHashMap<Long, Long> usages = bytesSent.get(nif);
-			if(usages != null) {
-				Long[] keys = usages.keySet().toArray(new Long[0]);
-				for(int i = keys.length-1; i > 0; i--) {
-					Long l = keys[i];
-					long cutoff = System.currentTimeMillis()-TimeUnit.MINUTES.toMillis(5);
-					if(l < cutoff) {
-						break;
-					}
-					samples++;
-					total += usages.get(l);
-				}
-			}
+	private RateSeries newCounterSeries() {
+		return RateSeries.of(TimeSeries.capacityFor(MaxUsageAge, SampleInterval) + 1, windows);
+	}
+
+	private void publishSnapshots(long now) {
+		HashMap<String, WindowSnapshot> recv = new HashMap<String, WindowSnapshot>(interfaces.size() * 2);
+		HashMap<String, WindowSnapshot> sent = new HashMap<String, WindowSnapshot>(interfaces.size() * 2);
+		for(int i = 0; i < interfaces.size(); i++) {
+			InterfaceState state = interfaces.get(i);
+			recv.put(state.name, WindowSnapshot.of(state.bytesRecv, now));
+			sent.put(state.name, WindowSnapshot.of(state.bytesSent, now));
 		}
-		if(samples == 0)
-			return 0;
-		//Return in Bits per second
-		return total/samples*8;
+		recvSnapshots = Collections.unmodifiableMap(recv);
+		sentSnapshots = Collections.unmodifiableMap(sent);
 	}
 
-	public long getRecv5M(String nif) {
-		int samples = 0;
-		long total = 0;
-		synchronized(usageLock) {
-			LinkedHashMap<Long, Long> usages = bytesRecv.get(nif);
-			if(usages != null) {
-				Long[] keys = usages.keySet().toArray(new Long[0]);
-				for(int i = keys.length-1; i > 0; i--) {
-					Long l = keys[i];
-					long cutoff = System.currentTimeMillis()-TimeUnit.MINUTES.toMillis(5);
-					if(l < cutoff) {
-						break;
-					}
-					samples++;
-					total += usages.get(l);
-				}
-			}
+	private void publishRollups(long now) {
+		HashMap<String, RollupSnapshot> recv = new HashMap<String, RollupSnapshot>(interfaces.size() * 2);
+		HashMap<String, RollupSnapshot> sent = new HashMap<String, RollupSnapshot>(interfaces.size() * 2);
+		for(int i = 0; i < interfaces.size(); i++) {
+			InterfaceState state = interfaces.get(i);
+			recv.put(state.name, state.recvHistory.summarize(now));
+			sent.put(state.name, state.sentHistory.summarize(now));
 		}
-		if(samples == 0)
-			return 0;
-		//Return in Bits per second
-		return total/samples*8;
+		recvRollups = Collections.unmodifiableMap(recv);
+		sentRollups = Collections.unmodifiableMap(sent);
 	}
 
-	public long getSent15M(String nif) {
+	public long getSent1M(String nif) {
+		return getSent(nif, TimeUnit.MINUTES.toMillis(1));
+	}
 
-		int samples = 0;long total = 0;
-		synchronized(usageLock) {
-			LinkedHashMap<Long, Long> usages = bytesSent.get(nif);
-			if(usages != null) {
-				Long[] keys = usages.keySet().toArray(new Long[0]);
-				for(int i = keys.length-1; i > 0; i--) {
-					Long l = keys[i];
-					long cutoff = System.currentTimeMillis()-TimeUnit.MINUTES.toMillis(15);
-					if(l < cutoff) {
-						break;
-					}
-					samples++;
-					total += usages.get(l);
-				}
-			}
-		}
-		if(samples == 0)
-			return 0;
-		//Return in Bits per second
-		return total/samples*8;
+	public long getRecv1M(String nif) {
+		return getRecv(nif, TimeUnit.MINUTES.toMillis(1));
+	}
+
+	public long getSent5M(String nif) {
+		return getSent(nif, TimeUnit.MINUTES.toMillis(5));
+	}
+
+	public long getRecv5M(String nif) {
+		return getRecv(nif, TimeUnit.MINUTES.toMillis(5));
+	}
+
+	public long getSent15M(String nif) {
+		return getSent(nif, TimeUnit.MINUTES.toMillis(15));
 	}
 
 	public long getRecv15M(String nif) {
-		int samples = 0;
-		long total = 0;
-		synchronized(usageLock) {
-			LinkedHashMap<Long, Long> usages = bytesRecv.get(nif);
-			if(usages != null) {
-				Long[] keys = usages.keySet().toArray(new Long[0]);
-				for(int i = keys.length-1; i > 0; i--) {
-					Long l = keys[i];
-					long cutoff = System.currentTimeMillis()-TimeUnit.MINUTES.toMillis(15);
-					if(l < cutoff) {
-						break;
-					}
-					samples++;
-					total += usages.get(l);
-				}
-			}
-		}
-		if(samples == 0)
+		return getRecv(nif, TimeUnit.MINUTES.toMillis(15));
+	}
+
+	public long getSent(String nif, long window) {
+		return getRate(sentSnapshots, nif, window);
+	}
+
+	public long getRecv(String nif, long window) {
+		return getRate(recvSnapshots, nif, window);
+	}
+
+	private long getRate(Map<String, WindowSnapshot> snapshots, String nif, long window) {
+		WindowSnapshot snapshot = snapshots.get(nif);
+		if(snapshot == null)
 			return 0;
 		//Return in Bits per second
-		return total/samples*8;
+		return (long) snapshot.average(window)*8;
 	}
 
 	public void cleanup() {
 		synchronized(usageLock) {
-			//usages.clear();
+			for(InterfaceState state : interfaces) {
+				state.clear();
+			}
+			recvSnapshots = Collections.emptyMap();
+			sentSnapshots = Collections.emptyMap();
+			recvRollups = Collections.emptyMap();
+			sentRollups = Collections.emptyMap();
 		}
 
 	}
@@ -263,7 +244,7 @@ public class NetworkMonitor extends Service<ServerStatusDiscordNode>{
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 		sb.append("Network Monitor[");
-		for(String nif : bytesRecv.keySet().toArray(new String[0])) {
+		for(String nif : recvSnapshots.keySet()) {
 			sb.append("\n\r{ Name: ");
 			sb.append(nif);
 			sb.append(" s1m: ");
@@ -284,4 +265,33 @@ public class NetworkMonitor extends Service<ServerStatusDiscordNode>{
 		return sb.toString();
 	}
 
+	private static class InterfaceState {
+
+		private final String name;
+		private final RateSeries bytesRecv;
+		private final RateSeries bytesSent;
+		//Rates in bytes per second, kept while the interface is missing so a flap does not lose days of history
+		private final RollupSeries recvHistory;
+		private final RollupSeries sentHistory;
+		private final SeriesJournal recvJournal;
+		private final SeriesJournal sentJournal;
+		private long lastTime, lastRecv, lastSent;
+
+		private InterfaceState(String name, RateSeries bytesRecv, RateSeries bytesSent, MetricStore store) {
+			this.name = name;
+			this.bytesRecv = bytesRecv;
+			this.bytesSent = bytesSent;
+			this.recvHistory = RollupSeries.open(store, "net." + name + ".recv.rollup");
+			this.sentHistory = RollupSeries.open(store, "net." + name + ".sent.rollup");
+			this.recvJournal = SeriesJournal.open(store, "net." + name + ".recv", bytesRecv.capacity());
+			this.sentJournal = SeriesJournal.open(store, "net." + name + ".sent", bytesSent.capacity());
+		}
+
+		private void clear() {
+			bytesRecv.clear();
+			bytesSent.clear();
+			lastTime = 0;
+		}
+	}
+
 }
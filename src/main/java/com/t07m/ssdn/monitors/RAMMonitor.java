@@ -15,50 +15,72 @@
  */
 package com.t07m.ssdn.monitors;
 
-import java.util.LinkedHashMap;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.t07m.application.Service;
-import com.t07m.ssdn.ServerStatusDiscordNode;
-import com.t07m.ssdn.providers.OSHIProvider;
+import com.t07m.ssdn.metrics.GaugeSeries;
+import com.t07m.ssdn.metrics.MetricStore;
+import com.t07m.ssdn.metrics.RollupSeries;
+import com.t07m.ssdn.metrics.RollupSnapshot;
+import com.t07m.ssdn.metrics.SeriesJournal;
+import com.t07m.ssdn.metrics.TimeSeries;
+import com.t07m.ssdn.metrics.WindowSnapshot;
+import com.t07m.ssdn.providers.HardwareSample;
 
-import oshi.hardware.GlobalMemory;
-import oshi.hardware.VirtualMemory;
+import lombok.Getter;
 
-public class RAMMonitor extends Service<ServerStatusDiscordNode>{
+public class RAMMonitor extends Monitor{
 
 	private static final Logger logger = LoggerFactory.getLogger(RAMMonitor.class);
 
-	private final long MaxUsageAge = TimeUnit.MINUTES.toMillis(15);
+	private final long[] windows;
+	private final long MaxUsageAge;
 
 	private Object usageLock = new Object();
 
-	private LinkedHashMap<Long, Float> usages;
+	private GaugeSeries usages;
+	private volatile @Getter WindowSnapshot snapshot;
+	private SeriesJournal journal;
+	private RollupSeries history;
+	private volatile @Getter RollupSnapshot rollups = RollupSnapshot.Empty;
 
-	public RAMMonitor() {
+	public RAMMonitor(long... windows) {
 		super(TimeUnit.SECONDS.toMillis(3));
+		this.windows = TimeSeries.windowsOf(windows);
+		this.MaxUsageAge = this.windows[this.windows.length-1];
+		this.snapshot = WindowSnapshot.empty(this.windows);
 	}
 
-	public void init() {
+	public void init(MetricStore store) {
 		logger.debug("Initializing RAMMonitor");
-		usages = new LinkedHashMap<Long, Float>();
+		synchronized(usageLock) {
+			usages = GaugeSeries.of(TimeSeries.capacityFor(MaxUsageAge, getInterval()), windows);
+			journal = SeriesJournal.open(store, "ram", usages.capacity());
+			history = RollupSeries.open(store, "ram.rollup");
+			//Pick up where the last run left off
+			long now = System.currentTimeMillis();
+			if(journal != null) {
+				journal.restore(usages, now-MaxUsageAge, now);
+				snapshot = WindowSnapshot.of(usages, now);
+			}
+			if(store != null)
+				rollups = history.summarize(now);
+		}
 	}
 
-	public void process() {
-		
+	public void sample(HardwareSample sample) {
+		long now = sample.getTime();
+		double usage = 1-(sample.getMemoryAvailable()/(double) sample.getMemoryTotal());
 		synchronized(usageLock) {
-			GlobalMemory memory = OSHIProvider.getHardware().getMemory();
-			double usage = 1-(memory.getAvailable()/(double) memory.getTotal());
-			usages.put(System.currentTimeMillis(), (float) usage);
-			for(Long l : usages.keySet().toArray(new Long[0])) {
-				if(l > System.currentTimeMillis()-MaxUsageAge) {
-					break;
-				}
-				usages.remove(l);
-			}		
+			usages.add(now, (float) usage);
+			if(journal != null)
+				journal.append(now, (float) usage);
+			if(history.add(now, (float) usage))
+				rollups = history.summarize(now);
+			usages.evictOlderThan(now-MaxUsageAge);
+			snapshot = WindowSnapshot.of(usages, now);
 		}
 	}
 
@@ -67,68 +89,29 @@ public class RAMMonitor extends Service<ServerStatusDiscordNode>{
 	}
 
 	public double getUsage1M(int decimals) {
-		int samples = 0;
-		double total = 0;
-		synchronized(usageLock) {
-			Long[] keys = usages.keySet().toArray(new Long[0]);
-			for(int i = keys.length-1; i > 0; i--) {
-				Long l = keys[i];
-				long cutoff = System.currentTimeMillis()-TimeUnit.MINUTES.toMillis(1);
-				if(l < cutoff) {
-					break;
-				}
-				samples++;
-				total += usages.get(l);
-			}
-		}
-		if(samples == 0 || total ==0)
-			return 0;
-		return format(total/samples, decimals);
+		return getUsage(TimeUnit.MINUTES.toMillis(1), decimals);
 	}
 
 	public double getUsage5M(int decimals) {
-		int samples = 0;
-		double total = 0;
-		synchronized(usageLock) {
-			Long[] keys = usages.keySet().toArray(new Long[0]);
-			for(int i = keys.length-1; i > 0; i--) {
-				Long l = keys[i];
-				long cutoff = System.currentTimeMillis()-TimeUnit.MINUTES.toMillis(5);
-				if(l < cutoff) {
-					break;
-				}
-				samples++;
-				total += usages.get(l);
-			}
-		}
-		if(samples == 0 || total ==0)
-			return 0;
-		return format(total/samples, decimals);
+		return getUsage(TimeUnit.MINUTES.toMillis(5), decimals);
 	}
 
 	public double getUsage15M(int decimals) {
-		int samples = 0;
-		double total = 0;
-		synchronized(usageLock) {
-			Long[] keys = usages.keySet().toArray(new Long[0]);
-			for(int i = keys.length-1; i > 0; i--) {
-				Long l = keys[i];
-				long cutoff = System.currentTimeMillis()-TimeUnit.MINUTES.toMillis(15);
-				if(l < cutoff) {
-					break;
-				}
-				samples++;
-				total += usages.get(l);
-			}
-		}
-		if(samples == 0 || total ==0)
+		return getUsage(TimeUnit.MINUTES.toMillis(15), decimals);
+	}
+
+	public double getUsage(long window, int decimals) {
+		double average = snapshot.average(window);
+		if(average == 0)
 			return 0;
-		return format(total/samples, decimals);
+		return format(average, decimals);
 	}
 
 	public void cleanup() {
 		synchronized(usageLock) {
 			usages.clear();
+			snapshot = WindowSnapshot.empty(windows);
+			rollups = RollupSnapshot.Empty;
 		}
 	}
 	
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.monitors;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.t07m.application.Service;
+import com.t07m.ssdn.ServerStatusDiscordNode;
+import com.t07m.ssdn.handlers.StorageHandler;
+
+import lombok.Getter;
+
+/**
+ * Reads the free space of the monitored mounts once per embed update, on its
+ * own service rather than the {@link MetricsCollector} tick, so a hung network
+ * mount only delays this reading and never the rest of the sampling.
+ */
+public class StorageMonitor extends Service<ServerStatusDiscordNode>{
+
+	private static final Logger logger = LoggerFactory.getLogger(StorageMonitor.class);
+
+	private final ServerStatusDiscordNode app;
+	private volatile @Getter Map<String, Long> freeSpace = Collections.emptyMap();
+
+	public StorageMonitor(ServerStatusDiscordNode app) {
+		super(TimeUnit.SECONDS.toMillis(Math.max(app.getConfig().getUpdateFrequencySeconds(), 1)));
+		this.app = app;
+	}
+
+	public void init() {
+		logger.debug("Initializing StorageMonitor");
+	}
+
+	public void process() {
+		LinkedHashMap<String, Long> freeSpace = new LinkedHashMap<String, Long>();
+		for(String mnt : app.getConfig().getMonitoredStorageMounts()) {
+			freeSpace.put(mnt, StorageHandler.getFreeSpace(mnt));
+		}
+		this.freeSpace = Collections.unmodifiableMap(freeSpace);
+	}
+
+}
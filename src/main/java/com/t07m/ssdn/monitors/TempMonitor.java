@@ -15,48 +15,73 @@
  */
 package com.t07m.ssdn.monitors;
 
-import java.util.LinkedHashMap;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.t07m.application.Service;
-import com.t07m.ssdn.ServerStatusDiscordNode;
-import com.t07m.ssdn.providers.OSHIProvider;
+import com.t07m.ssdn.metrics.GaugeSeries;
+import com.t07m.ssdn.metrics.MetricStore;
+import com.t07m.ssdn.metrics.RollupSeries;
+import com.t07m.ssdn.metrics.RollupSnapshot;
+import com.t07m.ssdn.metrics.SeriesJournal;
+import com.t07m.ssdn.metrics.TimeSeries;
+import com.t07m.ssdn.metrics.WindowSnapshot;
+import com.t07m.ssdn.providers.HardwareSample;
 
-import oshi.hardware.Sensors;
+import lombok.Getter;
 
-public class TempMonitor extends Service<ServerStatusDiscordNode>{
+public class TempMonitor extends Monitor{
 
 	private static final Logger logger = LoggerFactory.getLogger(TempMonitor.class);
 
-	private final long MaxTempAge = TimeUnit.MINUTES.toMillis(15);
+	private final long[] windows;
+	private final long MaxTempAge;
 
 	private Object tempsLock = new Object();
 
-	private LinkedHashMap<Long, Float> temps;
+	private GaugeSeries temps;
+	private volatile @Getter WindowSnapshot snapshot;
+	private SeriesJournal journal;
+	private RollupSeries history;
+	private volatile @Getter RollupSnapshot rollups = RollupSnapshot.Empty;
 
-	public TempMonitor() {
+	public TempMonitor(long... windows) {
 		super(TimeUnit.SECONDS.toMillis(1));
+		this.windows = TimeSeries.windowsOf(windows);
+		this.MaxTempAge = this.windows[this.windows.length-1];
+		this.snapshot = WindowSnapshot.empty(this.windows);
 	}
 
-	public void init() {
+	public void init(MetricStore store) {
 		logger.debug("Initializing TempMonitor");
-		temps = new LinkedHashMap<Long, Float>();
+		synchronized(tempsLock) {
+			temps = GaugeSeries.of(TimeSeries.capacityFor(MaxTempAge, getInterval()), windows);
+			journal = SeriesJournal.open(store, "temp", temps.capacity());
+			history = RollupSeries.open(store, "temp.rollup");
+			//Pick up where the last run left off
+			long now = System.currentTimeMillis();
+			if(journal != null) {
+				journal.restore(temps, now-MaxTempAge, now);
+				snapshot = WindowSnapshot.of(temps, now);
+			}
+			if(store != null)
+				rollups = history.summarize(now);
+		}
 	}
 
-	public void process() {
-		Sensors sensors = OSHIProvider.getHardware().getSensors();
+	public void sample(HardwareSample sample) {
+		long now = sample.getTime();
+		double temp = sample.getCpuTemperature();
 		synchronized(tempsLock) {
-			double temp = sensors.getCpuTemperature();
-			temps.put(System.currentTimeMillis(), (float) temp);
-			for(Long l : temps.keySet().toArray(new Long[0])) {
-				if(l > System.currentTimeMillis()-MaxTempAge) {
-					break;
-				}
-				temps.remove(l);
-			}		
+			temps.add(now, (float) temp);
+			if(journal != null)
+				journal.append(now, (float) temp);
+			//Hosts without a sensor read 0, which would pin the history minimum
+			if(temp > 0 && history.add(now, (float) temp))
+				rollups = history.summarize(now);
+			temps.evictOlderThan(now-MaxTempAge);
+			snapshot = WindowSnapshot.of(temps, now);
 		}
 	}
 
@@ -65,68 +90,29 @@ public class TempMonitor extends Service<ServerStatusDiscordNode>{
 	}
 
 	public double getTemp1M(int decimals) {
-		int samples = 0;
-		double total = 0;
-		synchronized(tempsLock) {
-			Long[] keys = temps.keySet().toArray(new Long[0]);
-			for(int i = keys.length-1; i > 0; i--) {
-				Long l = keys[i];
-				long cutoff = System.currentTimeMillis()-TimeUnit.MINUTES.toMillis(1);
-				if(l < cutoff) {
-					break;
-				}
-				samples++;
-				total += temps.get(l);
-			}
-		}
-		if(samples == 0 || total ==0)
-			return 0;
-		return format(total/samples, decimals);
+		return getTemp(TimeUnit.MINUTES.toMillis(1), decimals);
 	}
 
 	public double getTemp5M(int decimals) {
-		int samples = 0;
-		double total = 0;
-		synchronized(tempsLock) {
-			Long[] keys = temps.keySet().toArray(new Long[0]);
-			for(int i = keys.length-1; i > 0; i--) {
-				Long l = keys[i];
-				long cutoff = System.currentTimeMillis()-TimeUnit.MINUTES.toMillis(5);
-				if(l < cutoff) {
-					break;
-				}
-				samples++;
-				total += temps.get(l);
-			}
-		}
-		if(samples == 0 || total ==0)
-			return 0;
-		return format(total/samples, decimals);
+		return getTemp(TimeUnit.MINUTES.toMillis(5), decimals);
 	}
 
 	public double getTemp15M(int decimals) {
-		int samples = 0;
-		double total = 0;
-		synchronized(tempsLock) {
-			Long[] keys = temps.keySet().toArray(new Long[0]);
-			for(int i = keys.length-1; i > 0; i--) {
-				Long l = keys[i];
-				long cutoff = System.currentTimeMillis()-TimeUnit.MINUTES.toMillis(15);
-				if(l < cutoff) {
-					break;
-				}
-				samples++;
-				total += temps.get(l);
-			}
-		}
-		if(samples == 0 || total ==0)
+		return getTemp(TimeUnit.MINUTES.toMillis(15), decimals);
+	}
+
+	public double getTemp(long window, int decimals) {
+		double average = snapshot.average(window);
+		if(average == 0)
 			return 0;
-		return format(total/samples, decimals);
+		return format(average, decimals);
 	}
 
 	public void cleanup() {
 		synchronized(tempsLock) {
 			temps.clear();
+			snapshot = WindowSnapshot.empty(windows);
+			rollups = RollupSnapshot.Empty;
 		}
 	}
 	
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.providers;
+
+import lombok.Getter;
+import oshi.hardware.CentralProcessor.TickType;
+import oshi.hardware.GlobalMemory;
+import oshi.hardware.HardwareAbstractionLayer;
+import oshi.hardware.VirtualMemory;
+
+/**
+ * Hardware readings for a single collector tick. Each source is read at most
+ * once per tick, on first use, and shared by every monitor sampled that tick.
+ * Readings come from the {@link HardwareSource}, /proc and /sys on Linux,
+ * falling back to OSHI for anything that cannot be read there.
+ */
+public class HardwareSample {
+
+	private final HardwareSource source;
+
+	private @Getter long time;
+
+	private boolean cpuRead, memoryRead, sensorsRead;
+
+	private final long[] cpuTicks = new long[TickType.values().length];
+	private long memoryTotal, memoryAvailable, swapTotal, swapUsed;
+	private double cpuTemperature;
+
+	public HardwareSample() {
+		this(OSHIProvider.getSource());
+	}
+
+	/**
+	 * @param source direct source to read from, or null to only use what subclasses and OSHI provide.
+	 */
+	protected HardwareSample(HardwareSource source) {
+		this.source = source;
+	}
+
+	public void reset(long time) {
+		this.time = time;
+		this.cpuRead = false;
+		this.memoryRead = false;
+		this.sensorsRead = false;
+	}
+
+	public long[] getCpuTicks() {
+		if(!cpuRead) {
+			if(source == null || !source.readCpuTicks(cpuTicks)) {
+				long[] ticks = OSHIProvider.getHardware().getProcessor().getSystemCpuLoadTicks();
+				System.arraycopy(ticks, 0, cpuTicks, 0, Math.min(ticks.length, cpuTicks.length));
+			}
+			cpuRead = true;
+		}
+		return cpuTicks;
+	}
+
+	public long getMemoryTotal() {
+		readMemory();
+		return memoryTotal;
+	}
+
+	public long getMemoryAvailable() {
+		readMemory();
+		return memoryAvailable;
+	}
+
+	public long getSwapTotal() {
+		readMemory();
+		return swapTotal;
+	}
+
+	public long getSwapUsed() {
+		readMemory();
+		return swapUsed;
+	}
+
+	public double getCpuTemperature() {
+		if(!sensorsRead) {
+			cpuTemperature = source != null ? source.readCpuTemperature() : Double.NaN;
+			if(Double.isNaN(cpuTemperature))
+				cpuTemperature = OSHIProvider.getHardware().getSensors().getCpuTemperature();
+			sensorsRead = true;
+		}
+		return cpuTemperature;
+	}
+
+	/**
+	 * Reads the byte counters of the named interfaces in one pass.
+	 *
+	 * @return false if there is no direct source, in which case the caller
+	 * should update its OSHI handles instead.
+	 */
+	public boolean readNetworkCounters(byte[][] names, long[] bytesRecv, long[] bytesSent) {
+		return source != null && source.readNetworkCounters(names, bytesRecv, bytesSent);
+	}
+
+	private void readMemory() {
+		if(!memoryRead && source != null && source.readMemory()) {
+			memoryTotal = source.getMemoryTotal();
+			memoryAvailable = source.getMemoryAvailable();
+			swapTotal = source.getSwapTotal();
+			swapUsed = source.getSwapUsed();
+			memoryRead = true;
+		}
+		if(!memoryRead) {
+			HardwareAbstractionLayer hal = OSHIProvider.getHardware();
+			GlobalMemory memory = hal.getMemory();
+			VirtualMemory virtual = memory.getVirtualMemory();
+			memoryTotal = memory.getTotal();
+			memoryAvailable = memory.getAvailable();
+			swapTotal = virtual.getSwapTotal();
+			swapUsed = virtual.getSwapUsed();
+			memoryRead = true;
+		}
+	}
+}
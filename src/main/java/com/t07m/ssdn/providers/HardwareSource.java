@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.providers;
+
+/**
+ * Where a {@link HardwareSample} and the handlers read the host from, installed
+ * with {@link OSHIProvider#setSource(HardwareSource)}. On Linux this is /proc
+ * and /sys, elsewhere there is none and everything goes through OSHI. A reading
+ * the source cannot provide reports false, NaN, -1 or null and the caller
+ * falls back to OSHI for it.
+ */
+public interface HardwareSource {
+
+	/**
+	 * Fills the ticks in the same order as OSHI's TickType.
+	 */
+	boolean readCpuTicks(long[] ticks);
+
+	/**
+	 * Takes a reading for the memory and swap getters.
+	 */
+	boolean readMemory();
+
+	long getMemoryTotal();
+
+	long getMemoryAvailable();
+
+	long getSwapTotal();
+
+	long getSwapUsed();
+
+	double readCpuTemperature();
+
+	/**
+	 * Interfaces that are not present are reported as -1.
+	 */
+	boolean readNetworkCounters(byte[][] names, long[] bytesRecv, long[] bytesSent);
+
+	/**
+	 * @return the interfaces of this source, or null to enumerate them through OSHI.
+	 */
+	default String[] getInterfaceNames() {
+		return null;
+	}
+
+	/**
+	 * @return the mount points of this source, or null to enumerate them through OSHI.
+	 * Free and total space are only read from sources that list their mounts.
+	 */
+	default String[] getMountPoints() {
+		return null;
+	}
+
+	default long readFreeSpace(String mountPoint) {
+		return -1;
+	}
+
+	default long readTotalSpace(String mountPoint) {
+		return -1;
+	}
+
+	/**
+	 * @return uptime in seconds, or -1.
+	 */
+	default long getUptime() {
+		return -1;
+	}
+
+	default String getProcessorName() {
+		return null;
+	}
+
+}
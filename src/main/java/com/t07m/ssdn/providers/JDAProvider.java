@@ -15,6 +15,8 @@
  */
 package com.t07m.ssdn.providers;
 
+import java.util.EnumSet;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,6 +27,9 @@ import lombok.Getter;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.MemberCachePolicy;
+import net.dv8tion.jda.api.utils.cache.CacheFlag;
 
 public class JDAProvider {
 
@@ -35,9 +40,12 @@ public class JDAProvider {
 	public static void initialize(ServerStatusDiscordNode app) {
 		if(jda != null)
 			return;
+		//Slash commands arrive without any intent, and nothing here reads members, presences or other cached entities
 		jda = JDABuilder
-				.create(app.getConfig().getDiscordToken(),
-						GatewayIntent.GUILD_MESSAGES, GatewayIntent.MESSAGE_CONTENT)
+				.createLight(app.getConfig().getDiscordToken(), EnumSet.noneOf(GatewayIntent.class))
+				.setMemberCachePolicy(MemberCachePolicy.NONE)
+				.setChunkingFilter(ChunkingFilter.NONE)
+				.disableCache(EnumSet.allOf(CacheFlag.class))
 				.addEventListeners(new StatusCommandListener(app)).setAutoReconnect(true).build();
 	}
 	
@@ -15,6 +15,8 @@
  */
 package com.t07m.ssdn.providers;
 
+import com.t07m.ssdn.providers.linux.LinuxProcSource;
+
 import oshi.PlatformEnum;
 import oshi.SystemInfo;
 import oshi.hardware.HardwareAbstractionLayer;
@@ -23,6 +25,8 @@ import oshi.software.os.OperatingSystem;
 public class OSHIProvider {
 
 	private static SystemInfo si;
+	private static HardwareSource source;
+	private static boolean sourceChecked = false;
 
 	public static HardwareAbstractionLayer getHardware() {
 		return getSystemInfo().getHardware();
@@ -36,6 +40,42 @@ public class OSHIProvider {
 		return SystemInfo.getCurrentPlatform();
 	}
 	
+	/**
+	 * @return the direct source to read the host from, or null to read everything through OSHI.
+	 */
+	public static synchronized HardwareSource getSource() {
+		if(!sourceChecked) {
+			if(getCurrentPlatform() == PlatformEnum.LINUX)
+				source = LinuxProcSource.create();
+			sourceChecked = true;
+		}
+		return source;
+	}
+
+	/**
+	 * Replaces the host with another source, such as a {@link com.t07m.ssdn.providers.synthetic.SyntheticHardwareSource}.
+	 * Must be called before anything samples or enumerates the hardware.
+	 */
+	public static synchronized void setSource(HardwareSource source) {
+		OSHIProvider.source = source;
+		sourceChecked = true;
+	}
+
+	/**
+	 * @return uptime in seconds.
+	 */
+	public static long getSystemUptime() {
+		HardwareSource source = getSource();
+		long uptime = source != null ? source.getUptime() : -1;
+		return uptime >= 0 ? uptime : getOperatingSystem().getSystemUptime();
+	}
+
+	public static String getProcessorName() {
+		HardwareSource source = getSource();
+		String name = source != null ? source.getProcessorName() : null;
+		return name != null ? name : getHardware().getProcessor().getProcessorIdentifier().getName();
+	}
+
 	private static SystemInfo getSystemInfo() {
 		if(si == null)
 			si = new SystemInfo();
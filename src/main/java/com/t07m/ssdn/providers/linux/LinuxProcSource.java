@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.providers.linux;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.t07m.ssdn.providers.HardwareSource;
+
+/**
+ * Reads CPU, memory, network and temperature figures straight from /proc and
+ * /sys through long lived {@link ProcFile}s. Nothing is allocated per read once
+ * the buffers have grown to fit their files.
+ */
+public class LinuxProcSource implements HardwareSource{
+
+	private static final Logger logger = LoggerFactory.getLogger(LinuxProcSource.class);
+
+	private static final List<String> CpuSensorNames = Arrays.asList("coretemp", "k10temp", "zenpower", "cpu_thermal", "cpu-thermal", "soc_thermal");
+
+	private static final byte[] CPU = bytes("cpu ");
+	private static final byte[] MEM_TOTAL = bytes("MemTotal:");
+	private static final byte[] MEM_FREE = bytes("MemFree:");
+	private static final byte[] MEM_AVAILABLE = bytes("MemAvailable:");
+	private static final byte[] BUFFERS = bytes("Buffers:");
+	private static final byte[] CACHED = bytes("Cached:");
+	private static final byte[] SWAP_TOTAL = bytes("SwapTotal:");
+	private static final byte[] SWAP_FREE = bytes("SwapFree:");
+
+	private final ProcFile stat = new ProcFile(Paths.get("/proc/stat"), 8192);
+	private final ProcFile meminfo = new ProcFile(Paths.get("/proc/meminfo"), 4096);
+	private final ProcFile netdev = new ProcFile(Paths.get("/proc/net/dev"), 4096);
+	private final ProcFile cpuTemp;
+
+	private long memTotal, memFree, memAvailable, buffers, cached, swapTotal, swapFree;
+
+	public LinuxProcSource() {
+		this.cpuTemp = findCpuTemperature();
+	}
+
+	public static LinuxProcSource create() {
+		LinuxProcSource source = new LinuxProcSource();
+		if(source.stat.read() && source.meminfo.read() && source.netdev.read()) {
+			return source;
+		}
+		logger.debug("Unable to read /proc, falling back to OSHI.");
+		source.close();
+		return null;
+	}
+
+	/**
+	 * Reads the aggregate cpu line of /proc/stat, in the same order as OSHI's
+	 * TickType: user, nice, system, idle, iowait, irq, softirq, steal.
+	 */
+	public boolean readCpuTicks(long[] ticks) {
+		if(!stat.read() || !stat.consume(CPU))
+			return false;
+		for(int i = 0; i < ticks.length; i++) {
+			long value = stat.nextLong();
+			ticks[i] = value < 0 ? 0 : value;
+		}
+		return true;
+	}
+
+	public boolean readMemory() {
+		if(!meminfo.read())
+			return false;
+		memAvailable = -1;
+		do {
+			if(meminfo.consume(MEM_TOTAL))
+				memTotal = meminfo.nextLong() * 1024;
+			else if(meminfo.consume(MEM_FREE))
+				memFree = meminfo.nextLong() * 1024;
+			else if(meminfo.consume(MEM_AVAILABLE))
+				memAvailable = meminfo.nextLong() * 1024;
+			else if(meminfo.consume(BUFFERS))
+				buffers = meminfo.nextLong() * 1024;
+			else if(meminfo.consume(CACHED))
+				cached = meminfo.nextLong() * 1024;
+			else if(meminfo.consume(SWAP_TOTAL))
+				swapTotal = meminfo.nextLong() * 1024;
+			else if(meminfo.consume(SWAP_FREE))
+				swapFree = meminfo.nextLong() * 1024;
+		} while(meminfo.nextLine());
+		//Kernels before 3.14 do not report MemAvailable
+		if(memAvailable < 0)
+			memAvailable = memFree + buffers + cached;
+		return memTotal > 0;
+	}
+
+	public long getMemoryTotal() {
+		return memTotal;
+	}
+
+	public long getMemoryAvailable() {
+		return memAvailable;
+	}
+
+	public long getSwapTotal() {
+		return swapTotal;
+	}
+
+	public long getSwapUsed() {
+		return swapTotal - swapFree;
+	}
+
+	/**
+	 * Reads the byte counters of the named interfaces from /proc/net/dev.
+	 * Interfaces that are not present are reported as -1.
+	 */
+	public boolean readNetworkCounters(byte[][] names, long[] bytesRecv, long[] bytesSent) {
+		Arrays.fill(bytesRecv, 0, names.length, -1);
+		Arrays.fill(bytesSent, 0, names.length, -1);
+		if(!netdev.read())
+			return false;
+		//Two header lines precede the interfaces
+		netdev.nextLine();
+		while(netdev.nextLine()) {
+			netdev.skipSpaces();
+			for(int i = 0; i < names.length; i++) {
+				if(netdev.consumeToken(names[i], (byte) ':')) {
+					bytesRecv[i] = netdev.nextLong();
+					for(int f = 0; f < 7; f++)
+						netdev.nextLong();
+					bytesSent[i] = netdev.nextLong();
+					break;
+				}
+			}
+		}
+		return true;
+	}
+
+	public boolean hasCpuTemperature() {
+		return cpuTemp != null;
+	}
+
+	public double readCpuTemperature() {
+		if(cpuTemp == null || !cpuTemp.read())
+			return Double.NaN;
+		long milli = cpuTemp.nextLong();
+		return milli < 0 ? Double.NaN : milli / 1000.0;
+	}
+
+	private static ProcFile findCpuTemperature() {
+		Path hwmon = Paths.get("/sys/class/hwmon");
+		if(!Files.isDirectory(hwmon))
+			return null;
+		try (DirectoryStream<Path> devices = Files.newDirectoryStream(hwmon)){
+			for(Path device : devices) {
+				Path name = device.resolve("name");
+				Path input = device.resolve("temp1_input");
+				if(Files.isReadable(name) && Files.isReadable(input)) {
+					String sensor = new String(Files.readAllBytes(name), StandardCharsets.US_ASCII).trim();
+					if(CpuSensorNames.contains(sensor)) {
+						logger.debug("Using " + sensor + " at " + input + " for CPU temperature.");
+						return new ProcFile(input, 32);
+					}
+				}
+			}
+		} catch (IOException e) {
+			logger.debug("Unable to scan hwmon devices: " + e.getMessage());
+		}
+		return null;
+	}
+
+	public static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	public void close() {
+		stat.close();
+		meminfo.close();
+		netdev.close();
+		if(cpuTemp != null)
+			cpuTemp.close();
+	}
+}
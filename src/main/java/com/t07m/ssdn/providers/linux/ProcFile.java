@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.providers.linux;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A /proc or /sys file held open for the life of the node. Each {@link #read()}
+ * re-reads the whole file from offset zero into the same buffer, and the
+ * parse methods walk that buffer in place without creating Strings.
+ */
+public class ProcFile implements Closeable {
+
+	private final Path path;
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private byte[] data;
+	private int pos = 0;
+	private int limit = 0;
+
+	public ProcFile(Path path, int initialSize) {
+		this.path = path;
+		this.buffer = ByteBuffer.allocate(initialSize);
+		this.data = buffer.array();
+	}
+
+	public boolean read() {
+		try {
+			if(channel == null)
+				channel = FileChannel.open(path, StandardOpenOption.READ);
+			buffer.clear();
+			long offset = 0;
+			int read;
+			while((read = channel.read(buffer, offset)) > 0) {
+				offset += read;
+				if(!buffer.hasRemaining())
+					grow();
+			}
+			limit = buffer.position();
+			pos = 0;
+			return true;
+		} catch (IOException e) {
+			close();
+			return false;
+		}
+	}
+
+	private void grow() {
+		ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+		buffer.flip();
+		larger.put(buffer);
+		buffer = larger;
+		data = buffer.array();
+	}
+
+	public boolean hasRemaining() {
+		return pos < limit;
+	}
+
+	public boolean nextLine() {
+		while(pos < limit && data[pos] != '\n')
+			pos++;
+		if(pos < limit) {
+			pos++;
+			return pos < limit;
+		}
+		return false;
+	}
+
+	public void skipSpaces() {
+		while(pos < limit && (data[pos] == ' ' || data[pos] == '\t'))
+			pos++;
+	}
+
+	/**
+	 * Consumes the prefix if the current position starts with it.
+	 */
+	public boolean consume(byte[] prefix) {
+		if(limit - pos < prefix.length)
+			return false;
+		for(int i = 0; i < prefix.length; i++) {
+			if(data[pos+i] != prefix[i])
+				return false;
+		}
+		pos += prefix.length;
+		return true;
+	}
+
+	/**
+	 * Consumes the token if it runs from the current position up to the
+	 * terminator, leaving the position just past the terminator.
+	 */
+	public boolean consumeToken(byte[] token, byte terminator) {
+		int end = pos + token.length;
+		if(end >= limit || data[end] != terminator)
+			return false;
+		if(!consume(token))
+			return false;
+		pos++;
+		return true;
+	}
+
+	public boolean skipPast(byte b) {
+		while(pos < limit && data[pos] != '\n') {
+			if(data[pos++] == b)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Parses the next unsigned decimal on the current line.
+	 *
+	 * @return the value, or -1 if the line has no further numbers.
+	 */
+	public long nextLong() {
+		skipSpaces();
+		if(pos >= limit || data[pos] < '0' || data[pos] > '9')
+			return -1;
+		long value = 0;
+		while(pos < limit && data[pos] >= '0' && data[pos] <= '9') {
+			value = value * 10 + (data[pos++] - '0');
+		}
+		return value;
+	}
+
+	public void close() {
+		if(channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {}
+			channel = null;
+		}
+	}
+
+	public Path getPath() {
+		return path;
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.providers.synthetic;
+
+import java.util.Arrays;
+
+/**
+ * A level between 0 and 1 over time, driving one figure of a
+ * {@link SyntheticHardwareSource}.
+ */
+public interface LoadPattern {
+
+	double at(long time);
+
+	static LoadPattern constant(double level) {
+		return time -> level;
+	}
+
+	static LoadPattern wave(double min, double max, long period) {
+		return time -> min + (max - min) * (Math.sin(2 * Math.PI * (time % period) / period) + 1) / 2;
+	}
+
+	/**
+	 * @return base most of the time, peak for length out of every period.
+	 */
+	static LoadPattern spikes(double base, double peak, long period, long length) {
+		return time -> time % period < length ? peak : base;
+	}
+
+	/**
+	 * Moves linearly between keyframes and repeats once past the last one.
+	 */
+	static LoadPattern script(long[] times, double[] levels) {
+		if(times.length == 0 || times.length != levels.length)
+			throw new IllegalArgumentException("Every keyframe needs a time and a level");
+		long[] t = times.clone();
+		double[] l = levels.clone();
+		long length = Math.max(1, t[t.length-1]);
+		return time -> {
+			long offset = time % length;
+			int i = Arrays.binarySearch(t, offset);
+			if(i >= 0)
+				return l[i];
+			i = -i - 1;
+			if(i == 0)
+				return l[0];
+			if(i == t.length)
+				return l[t.length-1];
+			double progress = (double) (offset - t[i-1]) / (t[i] - t[i-1]);
+			return l[i-1] + (l[i] - l[i-1]) * progress;
+		};
+	}
+
+	/**
+	 * Parses "seconds:level" keyframes such as "0:0.1, 600:0.9, 900:0.1" into a {@link #script(long[], double[])}.
+	 */
+	static LoadPattern parse(String script) {
+		String[] frames = script.split(",");
+		long[] times = new long[frames.length];
+		double[] levels = new double[frames.length];
+		for(int i = 0; i < frames.length; i++) {
+			String[] frame = frames[i].trim().split(":");
+			if(frame.length != 2)
+				throw new IllegalArgumentException("Keyframe is not seconds:level: " + frames[i]);
+			times[i] = Long.parseLong(frame[0].trim()) * 1000;
+			levels[i] = Double.parseDouble(frame[1].trim());
+		}
+		return script(times, levels);
+	}
+
+}
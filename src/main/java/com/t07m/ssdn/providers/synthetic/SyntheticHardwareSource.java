@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.providers.synthetic;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import com.t07m.ssdn.providers.HardwareSource;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import oshi.hardware.CentralProcessor.TickType;
+
+/**
+ * A made up host of any size for load testing: as many interfaces, mounts
+ * and temperature sensors as asked for, each figure following a
+ * {@link LoadPattern} on the given clock. Counters are integrated from the
+ * patterns between reads, so they only ever increase, as on a real host.
+ * Interfaces and mounts are offset from each other in time so they do not
+ * all move in step.
+ */
+public class SyntheticHardwareSource implements HardwareSource{
+
+	private static final long TicksPerSecond = 100;
+	private static final long MemoryTotal = 64L << 30;
+	private static final long SwapTotal = 8L << 30;
+	private static final long MountSize = 1L << 40;
+	//Highest rate of the fastest interface, others step down to a tenth of it
+	private static final long MaxBytesPerSecond = 125_000_000L;
+
+	private final LongSupplier clock;
+	private final long start;
+	private final String[] interfaces;
+	private final String[] mounts;
+	private final HashMap<String, Integer> interfaceIndex = new HashMap<String, Integer>();
+	private final HashMap<String, Integer> mountIndex = new HashMap<String, Integer>();
+	private final double[] sensorOffsets;
+
+	private @Getter @Setter LoadPattern cpuLoad = LoadPattern.wave(0.1, 0.6, TimeUnit.MINUTES.toMillis(20));
+	private @Getter @Setter LoadPattern memoryLoad = LoadPattern.wave(0.3, 0.7, TimeUnit.HOURS.toMillis(2));
+	private @Getter @Setter LoadPattern swapLoad = LoadPattern.constant(0.05);
+	private @Getter @Setter LoadPattern networkLoad = LoadPattern.spikes(0.05, 0.8, TimeUnit.MINUTES.toMillis(30), TimeUnit.MINUTES.toMillis(5));
+	private @Getter @Setter LoadPattern diskFill = LoadPattern.wave(0.2, 0.9, TimeUnit.DAYS.toMillis(1));
+
+	private long cpuTime, busyTicks, idleTicks;
+	private double busyFraction;
+	private long memoryTime;
+	private long networkTime;
+	private final long[] bytesRecv;
+	private final long[] bytesSent;
+	private byte[][] resolvedNames;
+	private int[] resolved = new int[0];
+
+	public SyntheticHardwareSource(LongSupplier clock, int interfaceCount, int mountCount, int sensorCount) {
+		this.clock = clock;
+		this.start = clock.getAsLong();
+		this.cpuTime = start;
+		this.networkTime = start;
+		this.interfaces = new String[interfaceCount];
+		for(int i = 0; i < interfaceCount; i++) {
+			interfaces[i] = "syn" + i;
+			interfaceIndex.put(interfaces[i], i);
+		}
+		this.mounts = new String[mountCount];
+		for(int i = 0; i < mountCount; i++) {
+			mounts[i] = i == 0 ? "/" : "/mnt/vol" + i;
+			mountIndex.put(mounts[i], i);
+		}
+		this.sensorOffsets = new double[Math.max(1, sensorCount)];
+		for(int i = 0; i < sensorOffsets.length; i++) {
+			sensorOffsets[i] = (i * 7) % 11;
+		}
+		this.bytesRecv = new long[interfaceCount];
+		this.bytesSent = new long[interfaceCount];
+	}
+
+	private static double clamp(double level) {
+		return Math.max(0, Math.min(1, level));
+	}
+
+	private long offset(int i) {
+		return i * TimeUnit.SECONDS.toMillis(37);
+	}
+
+	public boolean readCpuTicks(long[] ticks) {
+		long now = clock.getAsLong();
+		if(now > cpuTime) {
+			double elapsed = (now - cpuTime) * TicksPerSecond / 1000.0;
+			double busy = elapsed * clamp(cpuLoad.at(now)) + busyFraction;
+			long whole = (long) busy;
+			busyFraction = busy - whole;
+			busyTicks += whole;
+			idleTicks += Math.round(elapsed) - whole;
+			cpuTime = now;
+		}
+		ticks[TickType.USER.getIndex()] = busyTicks;
+		ticks[TickType.IDLE.getIndex()] = idleTicks;
+		return true;
+	}
+
+	public boolean readMemory() {
+		memoryTime = clock.getAsLong();
+		return true;
+	}
+
+	public long getMemoryTotal() {
+		return MemoryTotal;
+	}
+
+	public long getMemoryAvailable() {
+		return (long) (MemoryTotal * (1 - clamp(memoryLoad.at(memoryTime))));
+	}
+
+	public long getSwapTotal() {
+		return SwapTotal;
+	}
+
+	public long getSwapUsed() {
+		return (long) (SwapTotal * clamp(swapLoad.at(memoryTime)));
+	}
+
+	/**
+	 * @return the hottest sensor, the way a package temperature is reported.
+	 */
+	public double readCpuTemperature() {
+		double load = clamp(cpuLoad.at(clock.getAsLong()));
+		double hottest = Double.NaN;
+		for(int i = 0; i < sensorOffsets.length; i++) {
+			double temp = 35 + 50 * load + sensorOffsets[i];
+			if(!(temp <= hottest))
+				hottest = temp;
+		}
+		return hottest;
+	}
+
+	public boolean readNetworkCounters(byte[][] names, long[] bytesRecv, long[] bytesSent) {
+		long now = clock.getAsLong();
+		if(now > networkTime) {
+			double seconds = (now - networkTime) / 1000.0;
+			for(int i = 0; i < interfaces.length; i++) {
+				long rate = MaxBytesPerSecond / (1 + i % 10);
+				double level = clamp(networkLoad.at(now + offset(i)));
+				this.bytesRecv[i] += (long) (rate * level * seconds);
+				this.bytesSent[i] += (long) (rate * level * seconds / 8);
+			}
+			networkTime = now;
+		}
+		int[] indices = resolve(names);
+		for(int i = 0; i < names.length; i++) {
+			int index = indices[i];
+			bytesRecv[i] = index < 0 ? -1 : this.bytesRecv[index];
+			bytesSent[i] = index < 0 ? -1 : this.bytesSent[index];
+		}
+		return true;
+	}
+
+	//Callers pass the same names every tick, so they are only looked up when the array changes
+	private int[] resolve(byte[][] names) {
+		if(names != resolvedNames) {
+			int[] indices = new int[names.length];
+			for(int i = 0; i < names.length; i++) {
+				indices[i] = interfaceIndex.getOrDefault(new String(names[i], StandardCharsets.US_ASCII), -1);
+			}
+			resolved = indices;
+			resolvedNames = names;
+		}
+		return resolved;
+	}
+
+	public String[] getInterfaceNames() {
+		return interfaces;
+	}
+
+	public String[] getMountPoints() {
+		return mounts;
+	}
+
+	public long readFreeSpace(String mountPoint) {
+		Integer i = mountIndex.get(mountPoint);
+		if(i == null)
+			return -1;
+		return (long) (MountSize * (1 - clamp(diskFill.at(clock.getAsLong() + offset(i)))));
+	}
+
+	public long readTotalSpace(String mountPoint) {
+		return mountIndex.containsKey(mountPoint) ? MountSize : -1;
+	}
+
+	public long getUptime() {
+		return TimeUnit.MILLISECONDS.toSeconds(clock.getAsLong() - start);
+	}
+
+	public String getProcessorName() {
+		return "Synthetic Processor";
+	}
+
+}
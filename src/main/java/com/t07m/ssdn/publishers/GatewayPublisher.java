@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.publishers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.t07m.ssdn.providers.JDAProvider;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.JDA.Status;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.requests.ErrorResponse;
+
+/**
+ * Edits through the JDA gateway session held by {@link JDAProvider}.
+ */
+public class GatewayPublisher implements StatusPublisher {
+
+	public boolean isReady() {
+		JDA jda = JDAProvider.get();
+		return jda != null && jda.getStatus() == Status.CONNECTED;
+	}
+
+	public boolean canReach(long channelID) {
+		JDA jda = JDAProvider.get();
+		return jda != null && jda.getTextChannelById(channelID) != null;
+	}
+
+	public void edit(long channelID, long messageID, MessageEmbed embed, long timeout, Runnable success, Consumer<Throwable> failure) {
+		//JDA throws straight away for problems it can check locally, such as missing permissions
+		try {
+			JDA jda = JDAProvider.get();
+			TextChannel channel = jda == null ? null : jda.getTextChannelById(channelID);
+			if(channel == null) {
+				failure.accept(new IllegalStateException("Channel " + channelID + " is not available"));
+				return;
+			}
+			channel.editMessageEmbedsById(messageID, embed)
+			.timeout(timeout, TimeUnit.MILLISECONDS)
+			.queue(response -> success.run(), failure);
+		} catch (RuntimeException e) {
+			failure.accept(e);
+		}
+	}
+
+	public boolean isGone(Throwable error) {
+		if(!(error instanceof ErrorResponseException))
+			return false;
+		ErrorResponse response = ((ErrorResponseException) error).getErrorResponse();
+		return response == ErrorResponse.UNKNOWN_MESSAGE
+				|| response == ErrorResponse.UNKNOWN_CHANNEL
+				|| response == ErrorResponse.MISSING_ACCESS;
+	}
+
+	//JDA consumes the rate limit headers itself
+	public long getRateLimitWait(long channelID) {
+		return -1;
+	}
+
+	public void shutdown() {}
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.publishers;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.t07m.ssdn.ServerStatusDiscordNode;
+
+import lombok.Getter;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Edits status messages with plain REST calls authorized by the bot token.
+ * No gateway session is opened, so there is no websocket, heartbeat, event
+ * dispatch or entity cache. The messages must already exist, they are still
+ * created with the init command while running in gateway mode.
+ * <p>
+ * Discord's rate limit headers are tracked per channel, which is how message
+ * edits are bucketed, so one busy channel never holds up another.
+ */
+public class RestPublisher implements StatusPublisher {
+
+	private static final Logger logger = LoggerFactory.getLogger(RestPublisher.class);
+
+	private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+	private final OkHttpClient client;
+	private final String token;
+	private final @Getter String baseURL;
+	private final ConcurrentHashMap<Long, Long> blockedUntil = new ConcurrentHashMap<Long, Long>();
+
+	public RestPublisher(String token, String baseURL) {
+		this.token = token;
+		this.baseURL = baseURL.endsWith("/") ? baseURL.substring(0, baseURL.length()-1) : baseURL;
+		this.client = new OkHttpClient.Builder().build();
+	}
+
+	public boolean isReady() {
+		return true;
+	}
+
+	public boolean canReach(long channelID) {
+		return true;
+	}
+
+	public void edit(long channelID, long messageID, MessageEmbed embed, long timeout, Runnable success, Consumer<Throwable> failure) {
+		Long blocked = blockedUntil.get(channelID);
+		long now = System.currentTimeMillis();
+		if(blocked != null && blocked > now) {
+			failure.accept(new RetryAfterException("Rate limit bucket for channel " + channelID + " is exhausted", blocked - now));
+			return;
+		}
+		String body = DataObject.empty().put("embeds", DataArray.empty().add(embed.toData())).toString();
+		Request request = new Request.Builder()
+				.url(baseURL + "/channels/" + channelID + "/messages/" + messageID)
+				.header("Authorization", "Bot " + token)
+				.header("User-Agent", "DiscordBot (https://github.com/miles7191/Server-Status-Discord-Node, " + ServerStatusDiscordNode.VERSION + ")")
+				.patch(RequestBody.create(body, JSON))
+				.build();
+		Call call = client.newCall(request);
+		call.timeout().timeout(timeout, TimeUnit.MILLISECONDS);
+		call.enqueue(new Callback() {
+
+			public void onResponse(Call call, Response response) {
+				try(Response r = response) {
+					long retryAfter = readRateLimit(channelID, r);
+					if(r.isSuccessful()) {
+						success.run();
+					}else if(r.code() == 429) {
+						failure.accept(new RetryAfterException("Rate limited on channel " + channelID, retryAfter));
+					}else {
+						failure.accept(new RestException(r.code(), r.body() != null ? r.body().string() : ""));
+					}
+				} catch (IOException e) {
+					failure.accept(e);
+				}
+			}
+
+			public void onFailure(Call call, IOException e) {
+				failure.accept(e);
+			}
+		});
+	}
+
+	private long readRateLimit(long channelID, Response response) {
+		long resetAfter = parseSeconds(response.header("X-RateLimit-Reset-After"));
+		if(response.code() == 429) {
+			long retryAfter = Math.max(resetAfter, parseSeconds(response.header("Retry-After")));
+			blockedUntil.put(channelID, System.currentTimeMillis() + retryAfter);
+			logger.debug("Rate limited on channel " + channelID + " for " + retryAfter + "ms");
+			return retryAfter;
+		}
+		if("0".equals(response.header("X-RateLimit-Remaining")) && resetAfter > 0) {
+			blockedUntil.put(channelID, System.currentTimeMillis() + resetAfter);
+		}else {
+			blockedUntil.remove(channelID);
+		}
+		return 0;
+	}
+
+	private static long parseSeconds(String value) {
+		if(value == null)
+			return 0;
+		try {
+			return (long) Math.ceil(Double.parseDouble(value) * 1000);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	public boolean isGone(Throwable error) {
+		if(!(error instanceof RestException))
+			return false;
+		int status = ((RestException) error).getStatus();
+		return status == 403 || status == 404;
+	}
+
+	public long getRateLimitWait(long channelID) {
+		Long blocked = blockedUntil.get(channelID);
+		return blocked == null ? 0 : Math.max(0, blocked - System.currentTimeMillis());
+	}
+
+	public void shutdown() {
+		client.dispatcher().executorService().shutdown();
+		client.connectionPool().evictAll();
+	}
+
+	public static class RestException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		private final @Getter int status;
+
+		public RestException(int status, String body) {
+			super("HTTP " + status + ": " + body);
+			this.status = status;
+		}
+	}
+
+}
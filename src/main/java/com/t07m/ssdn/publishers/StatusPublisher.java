@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2022 Matthew Rosato
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.t07m.ssdn.publishers;
+
+import java.util.function.Consumer;
+
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+/**
+ * Sends status message edits to Discord.
+ */
+public interface StatusPublisher {
+
+	public boolean isReady();
+
+	public boolean canReach(long channelID);
+
+	public void edit(long channelID, long messageID, MessageEmbed embed, long timeout, Runnable success, Consumer<Throwable> failure);
+
+	/**
+	 * @return true if the error means the message or channel is gone or out of reach for good.
+	 */
+	public boolean isGone(Throwable error);
+
+	/**
+	 * @return how long the channel's rate limit bucket stays exhausted according to the last response,
+	 * 0 if it has requests left, or -1 if the publisher does not see Discord's rate limit headers.
+	 */
+	public long getRateLimitWait(long channelID);
+
+	public void shutdown();
+
+}